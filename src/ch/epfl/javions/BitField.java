@@ -0,0 +1,54 @@
+package ch.epfl.javions;
+
+import java.util.Objects;
+
+/**
+ * This record represents a field of bits of a type long value, described by its position and its size
+ * <p>
+ * The validity of the field is checked once, when it is created, so that the extraction of a field
+ * declared as a constant only consists of a shift and a mask.
+ *
+ * @param start (int) index of the least significant bit of the field
+ * @param size  (int) number of bits of the field
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public record BitField(int start, int size) {
+
+    /**
+     * public BitField compact constructor
+     *
+     * @throws IllegalArgumentException  if the size is not strictly greater than 0 and strictly less than 32
+     * @throws IndexOutOfBoundsException if the range defined by start and size is not included
+     *                                   between 0 (included) and 64 (excluded)
+     */
+    public BitField {
+        Preconditions.checkArgument(0 < size && size < Integer.SIZE);
+        Objects.checkFromIndexSize(start, size, Long.SIZE);
+    }
+
+    /**
+     * @param index (int) position of the bit
+     * @return (BitField) the field made of the single bit at the given index
+     * @throws IndexOutOfBoundsException if index is not in the range (0, 64(
+     */
+    public static BitField bit(int index) {
+        return new BitField(index, 1);
+    }
+
+    /**
+     * @param value (long) value to extract the field from
+     * @return (int) the bits of the field, as an unsigned value
+     */
+    public int extract(long value) {
+        return (int) (value >>> start) & ((1 << size) - 1);
+    }
+
+    /**
+     * @param value (long)
+     * @return (boolean) true iff the least significant bit of the field is 1 in the given value
+     */
+    public boolean test(long value) {
+        return ((value >>> start) & 1) == 1;
+    }
+}
@@ -1,12 +1,19 @@
 package ch.epfl.javions;
 
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.HexFormat;
 import java.util.Objects;
 
 /**
  * This class represents a sequence(string) of bytes.
+ * <p>
+ * A byte string can be a view over a range of an array shared with other byte strings (see wrap and slice),
+ * which is never modified once the string has been created. Fields of 2, 3, 4 or 8 bytes are read in big-endian
+ * order in one access to the array.
  *
  * @author: Bouden Omar (341381)
  * @author: Tlili Ahmed (344939)
@@ -14,7 +21,13 @@ import java.util.Objects;
 
 public final class ByteString {
     private static final HexFormat hf = HexFormat.of().withUpperCase();
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final int UINT16_MASK = (1 << Short.SIZE) - 1;
+    private static final long UINT32_MASK = (1L << Integer.SIZE) - 1;
     private final byte[] bytes;
+    private final int offset, length;
 
     /**
      * ByteString public constructor
@@ -23,7 +36,32 @@ public final class ByteString {
      * @param bytes (bytes[]) The given byte static array to be cloned and used in this class
      */
     public ByteString(byte[] bytes) {
-        this.bytes = bytes.clone();
+        this(bytes.clone(), 0, bytes.length);
+    }
+
+    /**
+     * ByteString private constructor
+     * Returns a string of bytes viewing the given range of the array, without copying it
+     *
+     * @param bytes  (bytes[]) backing array, which must never be modified afterwards
+     * @param offset (int) index in the array of the first byte of the string
+     * @param length (int) number of bytes of the string
+     */
+    private ByteString(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Returns a string of bytes whose content is that of the array passed as argument, without copying it.
+     * Reserved to callers owning the array, which must never modify it afterwards
+     *
+     * @param bytes (bytes[]) freshly filled array, no longer used by its caller
+     * @return (ByteString) the byte string backed by the given array
+     */
+    public static ByteString wrap(byte[] bytes) {
+        return new ByteString(bytes, 0, bytes.length);
     }
 
     /**
@@ -35,14 +73,27 @@ public final class ByteString {
      */
     public static ByteString ofHexadecimalString(String hexString) {
         Preconditions.checkArgument(!Bits.testBit(hexString.length(), 0));
-        return new ByteString(hf.parseHex(hexString));
+        return wrap(hf.parseHex(hexString));
     }
 
     /**
      * @return (int) the string f bytes' length
      */
     public int size() {
-        return bytes.length;
+        return length;
+    }
+
+    /**
+     * @param fromIndex (int)
+     * @param toIndex   (int)
+     * @return (ByteString) the byte string made of the bytes between fromIndex (included) and toIndex (excluded),
+     * sharing its content with this one
+     * @throws IndexOutOfBoundsException if the range given by fromIndex and toIndex
+     *                                   is not totally included between 0 and the string's size
+     */
+    public ByteString slice(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, length);
+        return new ByteString(bytes, offset + fromIndex, toIndex - fromIndex);
     }
 
     /**
@@ -52,8 +103,8 @@ public final class ByteString {
      * @return (int) the byte at the index position of the sequence as an integer
      */
     public int byteAt(int index) {
-        Objects.checkIndex(index, size());
-        return Byte.toUnsignedInt(bytes[index]);
+        Objects.checkIndex(index, length);
+        return Byte.toUnsignedInt(bytes[offset + index]);
     }
 
     /**
@@ -70,28 +121,81 @@ public final class ByteString {
      *                                   is not strictly less than the number of bytes in a long value
      */
     public long bytesInRange(int fromIndex, int toIndex) {
-        Objects.checkFromToIndex(fromIndex, toIndex, size());
+        Objects.checkFromToIndex(fromIndex, toIndex, length);
         Preconditions.checkArgument(toIndex - fromIndex <= Long.SIZE);
+        int count = toIndex - fromIndex;
+        if (count == Long.BYTES) return (long) LONG.get(bytes, offset + fromIndex);
+        if (0 < count && count < Long.BYTES && toIndex >= Long.BYTES)
+            return (long) LONG.get(bytes, offset + toIndex - Long.BYTES) & ((1L << (count * Byte.SIZE)) - 1);
         long toReturn = 0L;
         for (int i = fromIndex; i < toIndex; ++i) {
-            toReturn = toReturn | ((long) byteAt(i) << ((toIndex - i - 1) * (Long.SIZE / Byte.SIZE)));
+            toReturn = toReturn | ((long) Byte.toUnsignedInt(bytes[offset + i]) << ((toIndex - i - 1) * (Long.SIZE / Byte.SIZE)));
         }
         return toReturn;
     }
 
+    /**
+     * @param index (int) position of the first byte of the field
+     * @return (int) the 2 bytes starting at the index position, as an unsigned big-endian value
+     * @throws IndexOutOfBoundsException if the 2 bytes are not totally included in the string
+     */
+    public int uInt16At(int index) {
+        Objects.checkFromIndexSize(index, Short.BYTES, length);
+        return (short) SHORT.get(bytes, offset + index) & UINT16_MASK;
+    }
+
+    /**
+     * @param index (int) position of the first byte of the field
+     * @return (int) the 3 bytes starting at the index position, as an unsigned big-endian value
+     * @throws IndexOutOfBoundsException if the 3 bytes are not totally included in the string
+     */
+    public int uInt24At(int index) {
+        Objects.checkFromIndexSize(index, Short.BYTES + Byte.BYTES, length);
+        return (((short) SHORT.get(bytes, offset + index) & UINT16_MASK) << Byte.SIZE)
+                | Byte.toUnsignedInt(bytes[offset + index + Short.BYTES]);
+    }
+
+    /**
+     * @param index (int) position of the first byte of the field
+     * @return (long) the 4 bytes starting at the index position, as an unsigned big-endian value
+     * @throws IndexOutOfBoundsException if the 4 bytes are not totally included in the string
+     */
+    public long uInt32At(int index) {
+        Objects.checkFromIndexSize(index, Integer.BYTES, length);
+        return (int) INT.get(bytes, offset + index) & UINT32_MASK;
+    }
+
+    /**
+     * @param index (int) position of the first byte of the field
+     * @return (long) the 8 bytes starting at the index position, as a big-endian value
+     * @throws IndexOutOfBoundsException if the 8 bytes are not totally included in the string
+     */
+    public long longAt(int index) {
+        Objects.checkFromIndexSize(index, Long.BYTES, length);
+        return (long) LONG.get(bytes, offset + index);
+    }
+
     @Override
     public boolean equals(Object other0) {
-        return (other0 instanceof ByteString other) && Arrays.equals(other.bytes, this.bytes);
+        return (other0 instanceof ByteString other) && Arrays.equals(other.bytes, other.offset,
+                other.offset + other.length, bytes, offset, offset + length);
     }
 
+    /**
+     * @return (int) the same hash code as Arrays.hashCode for an array holding the bytes of the string
+     */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(bytes);
+        int hash = 1;
+        for (int i = offset; i < offset + length; ++i) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash;
     }
 
     @Override
     public String toString() {
-        return hf.formatHex(bytes);
+        return hf.formatHex(bytes, offset, offset + length);
     }
 
 }
@@ -15,7 +15,14 @@ public final class Crc24 {
     public static final int GENERATOR = 0xFFF409;
     private static final int GENERATOR_TABLE_SIZE = 256;
     private static final int CRC24_MSB_START = CRC24_SIZE - Byte.SIZE;
+    private static final int CRC24_MASK = (1 << CRC24_SIZE) - 1, BYTE_MASK = (1 << Byte.SIZE) - 1;
+    private static final int CRC24_SIZE_IN_BYTES = CRC24_SIZE / Byte.SIZE;
+    /**
+     * number of bytes processed at once, and thus of tables
+     */
+    private static final int SLICES = Long.BYTES;
     private final int[] array;
+    private final int[][] tables;
 
     /**
      * Public Crc24 default constructor
@@ -25,6 +32,7 @@ public final class Crc24 {
      */
     public Crc24(int generator) {
         array = buildTable(generator);
+        tables = buildSlicingTables(array);
     }
 
     /**
@@ -61,19 +69,80 @@ public final class Crc24 {
     }
 
     /**
-     * apply crc algorithm ( where input is treated byte by byte )
+     * @param table (int[]) the table built by buildTable, where each element of index i contains
+     *              the crc of the byte i
+     * @return an array of 8 tables, where the element of index i of table k contains the crc of the
+     * byte i followed by k zero bytes (table 0 being the given one)
+     */
+    private static int[][] buildSlicingTables(int[] table) {
+        int[][] tables = new int[SLICES][];
+        tables[0] = table;
+        for (int k = 1; k < SLICES; ++k) {
+            tables[k] = new int[GENERATOR_TABLE_SIZE];
+            for (int i = 0; i < GENERATOR_TABLE_SIZE; ++i) {
+                int previous = tables[k - 1][i];
+                tables[k][i] = ((previous << Byte.SIZE) & CRC24_MASK) ^ table[previous >>> CRC24_MSB_START];
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * apply crc algorithm ( where input is treated 8 bytes at a time, then byte by byte )
      *
      * @param bytes(byte[]) array of bytes
      * @return the 24 bit crc value as an int
      */
     public int crc(byte[] bytes) {
-        int crc = 0;
-        for (byte b : bytes) {
-            crc = ((crc << Byte.SIZE) | (b & 0xFF)) ^ array[Bits.extractUInt(crc, CRC24_MSB_START, Byte.SIZE)];
+        int[] t0 = tables[0], t1 = tables[1], t2 = tables[2], t3 = tables[3],
+                t4 = tables[4], t5 = tables[5], t6 = tables[6], t7 = tables[7];
+        int crc = 0, i = 0;
+        for (; i + SLICES <= bytes.length; i += SLICES) {
+            crc = t7[(bytes[i] ^ (crc >>> 16)) & BYTE_MASK] ^ t6[(bytes[i + 1] ^ (crc >>> 8)) & BYTE_MASK]
+                    ^ t5[(bytes[i + 2] ^ crc) & BYTE_MASK] ^ t4[bytes[i + 3] & BYTE_MASK]
+                    ^ t3[bytes[i + 4] & BYTE_MASK] ^ t2[bytes[i + 5] & BYTE_MASK]
+                    ^ t1[bytes[i + 6] & BYTE_MASK] ^ t0[bytes[i + 7] & BYTE_MASK];
         }
-        for (int i = 0; i < (CRC24_SIZE / Byte.SIZE); ++i) {
-            crc = (crc << Byte.SIZE) ^ array[Bits.extractUInt(crc, CRC24_MSB_START, Byte.SIZE)];
+        for (; i < bytes.length; ++i) {
+            crc = ((crc << Byte.SIZE) & CRC24_MASK) ^ t0[((crc >>> CRC24_MSB_START) ^ bytes[i]) & BYTE_MASK];
         }
-        return Bits.extractUInt(crc, 0, CRC24_SIZE);
+        return crc;
+    }
+
+    /**
+     * apply crc algorithm to a sequence of at most 16 bytes given as two longs
+     * ( for instance an ADS-B message, whose 8 first bytes are in high and 6 last bytes in low )
+     *
+     * @param high    (long) the 8 first bytes of the sequence, in big-endian order
+     * @param low     (long) the remaining bytes of the sequence, in big-endian order in its lowSize least significant bytes
+     * @param lowSize (int) number of bytes of the sequence contained in low
+     * @return the 24 bit crc value as an int
+     * @throws IllegalArgumentException if lowSize is not between 0 and 8 (both included)
+     */
+    public int crc(long high, long low, int lowSize) {
+        Preconditions.checkArgument(0 <= lowSize && lowSize <= SLICES);
+        return update(update(0, high, SLICES), low, lowSize);
+    }
+
+    /**
+     * @param crc   (int) crc of the bytes processed so far
+     * @param bytes (long) the bytes to process, in big-endian order in its count least significant bytes
+     * @param count (int) number of bytes to process, between 0 and 8
+     * @return the crc of the bytes processed so far followed by the given ones
+     */
+    private int update(int crc, long bytes, int count) {
+        if (count < CRC24_SIZE_IN_BYTES) {
+            for (int i = count - 1; i >= 0; --i) {
+                crc = ((crc << Byte.SIZE) & CRC24_MASK) ^ tables[0][((crc >>> CRC24_MSB_START) ^ (int) (bytes >>> (i * Byte.SIZE))) & BYTE_MASK];
+            }
+            return crc;
+        }
+        int updated = 0;
+        for (int i = 0; i < count; ++i) {
+            int b = (int) (bytes >>> ((count - 1 - i) * Byte.SIZE));
+            if (i < CRC24_SIZE_IN_BYTES) b ^= crc >>> (CRC24_MSB_START - i * Byte.SIZE);
+            updated ^= tables[count - 1 - i][b & BYTE_MASK];
+        }
+        return updated;
     }
 }
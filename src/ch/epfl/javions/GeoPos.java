@@ -9,6 +9,10 @@ package ch.epfl.javions;
  */
 public record GeoPos(int longitudeT32, int latitudeT32) {
     private static final int UPPER_BOUND_FOR_LATITUDE_T32_IN_ABS = 1 << 30;
+    /**
+     * mean radius of the earth, in meters
+     */
+    public static final double EARTH_RADIUS = 6_371 * Units.Length.KILOMETER;
 
     /**
      * public GeoPos compact constructor
@@ -43,6 +47,19 @@ public record GeoPos(int longitudeT32, int latitudeT32) {
         return Units.convertFrom(latitudeT32, Units.Angle.T32);
     }
 
+    /**
+     * @param that (GeoPos) other position
+     * @return (double) the great-circle distance between this position and the given one, in meters,
+     * computed on a spherical earth
+     */
+    public double distanceTo(GeoPos that) {
+        double sinHalfDeltaLatitude = Math.sin((that.latitude() - latitude()) / 2);
+        double sinHalfDeltaLongitude = Math.sin((that.longitude() - longitude()) / 2);
+        double haversine = sinHalfDeltaLatitude * sinHalfDeltaLatitude
+                + Math.cos(latitude()) * Math.cos(that.latitude()) * sinHalfDeltaLongitude * sinHalfDeltaLongitude;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(haversine)));
+    }
+
     @Override
     public String toString() {
         return "(" + Units.convert(longitudeT32, Units.Angle.T32, Units.Angle.DEGREE)
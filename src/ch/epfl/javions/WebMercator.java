@@ -36,4 +36,24 @@ public final class WebMercator {
         return Math.scalb(-Units.convertTo(Math2.asinh(Math.tan(latitude)),
                 Units.Angle.TURN) + LONGITUDE_LATITUDE_OFFSET_IN_TURN, ZOOM_LEVEL_OFFSET + zoomLevel);
     }
+
+    /**
+     * @param zoomLevel (int) given zoomLevel
+     * @param x         (double) x coordinate of the WebMercator projection
+     * @return longitude in radians of the given x coordinate, outside of [-pi, pi[ if x is outside of the map
+     */
+    public static double longitude(int zoomLevel, double x) {
+        return Units.convertFrom(Math.scalb(x, -(ZOOM_LEVEL_OFFSET + zoomLevel)) - LONGITUDE_LATITUDE_OFFSET_IN_TURN,
+                Units.Angle.TURN);
+    }
+
+    /**
+     * @param zoomLevel (int) given zoomLevel
+     * @param y         (double) y coordinate of the WebMercator projection
+     * @return latitude in radians of the given y coordinate
+     */
+    public static double latitude(int zoomLevel, double y) {
+        return Math.atan(Math.sinh(Units.convertFrom(
+                LONGITUDE_LATITUDE_OFFSET_IN_TURN - Math.scalb(y, -(ZOOM_LEVEL_OFFSET + zoomLevel)), Units.Angle.TURN)));
+    }
 }
@@ -1,5 +1,6 @@
 package ch.epfl.javions.adsb;
 
+import ch.epfl.javions.BitField;
 import ch.epfl.javions.Bits;
 import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
@@ -16,19 +17,23 @@ import java.util.Objects;
 
 public record AirbornePositionMessage(long timeStampNs, IcaoAddress icaoAddress, double altitude, int parity, double x,
                                       double y) implements Message {
-    private static final int ALT_DATA_CONTAINER_START = 36, ALT_DATA_CONTAINER_SIZE = 12;
-    private static final int Q_INDEX = 4;
+    private static final BitField ALT_DATA_CONTAINER = new BitField(36, 12);
+    private static final BitField Q = BitField.bit(4);
     private static final int REFERENCE_ALTITUDE_WHEN_Q = -1000, REFERENCE_ALTITUDE_WHEN_NOT_Q = -1300;
-    private static final int PARITY_INDEX = 34;
-    private static final int LONGITUDE_START = 0, LATITUDE_START = 17, LONGITUDE_AND_LATITUDE_SIZE = 17;
-    private static final int MULTIPLES_OF_HUNDRED_FEET_START = 0, MULTIPLES_OF_HUNDRED_FEET_SIZE = 3;
-    private static final int MULTIPLES_OF_FIVE_HUNDRED_FEET_START = 3, MULTIPLES_OF_FIVE_HUNDRED_FEET_SIZE = 9;
+    private static final BitField PARITY = BitField.bit(34);
+    private static final BitField LONGITUDE = new BitField(0, 17), LATITUDE = new BitField(17, 17);
+    private static final BitField MULTIPLES_OF_HUNDRED_FEET = new BitField(0, 3);
+    private static final BitField MULTIPLES_OF_FIVE_HUNDRED_FEET = new BitField(3, 9);
     private static final int FIRST_INVALID_MULTIPLES_OF_HUNDRED_FEET = 0, SECOND_INVALID_MULTIPLES_OF_HUNDRED_FEET = 5,
             THIRD_INVALID_MULTIPLES_OF_HUNDRED_FEET = 6, FOURTH_INVALID_MULTIPLES_OF_HUNDRED_FEET = 7;
     private static final int[] NEW_ORDER_OF_PERMUTATIONS = new int[]{4, 2, 0, 10, 8, 6, 5, 3, 1, 11, 9, 7};
     private static final int NORMALISATION_FACTOR = 131072;
-    private static final int MULTIPLES_OF_TWENTY_FIVE_LHS_START = 5, MULTIPLES_OF_TWENTY_FIVE_LHS_SIZE = 7,
-            MULTIPLES_OF_TWENTY_FIVE_RHS_START = 0, MULTIPLES_OF_TWENTY_FIVE_RHS_SIZE = 4;
+    private static final BitField MULTIPLES_OF_TWENTY_FIVE_LHS = new BitField(5, 7),
+            MULTIPLES_OF_TWENTY_FIVE_RHS = new BitField(0, 4);
+    /**
+     * altitudes in meters indexed by the 12-bit altitude field (NaN for invalid fields)
+     */
+    private static final double[] ALTITUDES = buildAltitudeTable();
 
     /**
      * Public AirbornePositionMessage compact constructor
@@ -73,45 +78,88 @@ public record AirbornePositionMessage(long timeStampNs, IcaoAddress icaoAddress,
     }
 
     /**
-     * @param rawMessage (RawMessage)
-     * @return (AirbornePositionMessage) the given airborne in-flight positioning raw message, or null if the altitude contained in the message is invalid
+     * @param altDataContainer (int) the 12 bits of the altitude field of a message
+     * @return (double) the altitude in meters encoded by the given field, or NaN if it is invalid
      */
-
-    public static AirbornePositionMessage of(RawMessage rawMessage) {
-        double alt, altInFoot;
-        long payload = rawMessage.payload();
-        int altDataContainer = Bits.extractUInt(payload, ALT_DATA_CONTAINER_START, ALT_DATA_CONTAINER_SIZE);
-        boolean Q = Bits.testBit(altDataContainer, Q_INDEX);
-        if (Q) {
-            int multiplesOfTwentyFive = (Bits.extractUInt(altDataContainer, MULTIPLES_OF_TWENTY_FIVE_LHS_START, MULTIPLES_OF_TWENTY_FIVE_LHS_SIZE) << MULTIPLES_OF_TWENTY_FIVE_RHS_SIZE) |
-                    Bits.extractUInt(altDataContainer, MULTIPLES_OF_TWENTY_FIVE_RHS_START, MULTIPLES_OF_TWENTY_FIVE_RHS_SIZE);
-            alt = Units.convertFrom(multiplesOfTwentyFive * 25 + REFERENCE_ALTITUDE_WHEN_Q, Units.Length.FOOT);
-        } else {
-            int reorderedAltDataContainer = reorderBits(altDataContainer);
-            int multiplesOfHundredFeet = decodeGray(Bits.extractUInt(reorderedAltDataContainer, MULTIPLES_OF_HUNDRED_FEET_START,
-                    MULTIPLES_OF_HUNDRED_FEET_SIZE), MULTIPLES_OF_HUNDRED_FEET_SIZE);
-            int multiplesOfFiveHundredFeet = decodeGray(Bits.extractUInt(reorderedAltDataContainer, MULTIPLES_OF_FIVE_HUNDRED_FEET_START,
-                    MULTIPLES_OF_FIVE_HUNDRED_FEET_SIZE), MULTIPLES_OF_FIVE_HUNDRED_FEET_SIZE);
-            switch (multiplesOfHundredFeet) {
-                case FIRST_INVALID_MULTIPLES_OF_HUNDRED_FEET, SECOND_INVALID_MULTIPLES_OF_HUNDRED_FEET,
-                        THIRD_INVALID_MULTIPLES_OF_HUNDRED_FEET -> {
-                    return null;
-                }
-                case FOURTH_INVALID_MULTIPLES_OF_HUNDRED_FEET -> multiplesOfHundredFeet = 5;
+    private static double decodeAltitude(int altDataContainer) {
+        if (Q.test(altDataContainer)) {
+            int multiplesOfTwentyFive = (MULTIPLES_OF_TWENTY_FIVE_LHS.extract(altDataContainer) << MULTIPLES_OF_TWENTY_FIVE_RHS.size()) |
+                    MULTIPLES_OF_TWENTY_FIVE_RHS.extract(altDataContainer);
+            return Units.convertFrom(multiplesOfTwentyFive * 25 + REFERENCE_ALTITUDE_WHEN_Q, Units.Length.FOOT);
+        }
+        int reorderedAltDataContainer = reorderBits(altDataContainer);
+        int multiplesOfHundredFeet = decodeGray(MULTIPLES_OF_HUNDRED_FEET.extract(reorderedAltDataContainer),
+                MULTIPLES_OF_HUNDRED_FEET.size());
+        int multiplesOfFiveHundredFeet = decodeGray(MULTIPLES_OF_FIVE_HUNDRED_FEET.extract(reorderedAltDataContainer),
+                MULTIPLES_OF_FIVE_HUNDRED_FEET.size());
+        switch (multiplesOfHundredFeet) {
+            case FIRST_INVALID_MULTIPLES_OF_HUNDRED_FEET, SECOND_INVALID_MULTIPLES_OF_HUNDRED_FEET,
+                    THIRD_INVALID_MULTIPLES_OF_HUNDRED_FEET -> {
+                return Double.NaN;
             }
-            if (Bits.testBit(multiplesOfFiveHundredFeet, 0)) multiplesOfHundredFeet = 6 - multiplesOfHundredFeet;
+            case FOURTH_INVALID_MULTIPLES_OF_HUNDRED_FEET -> multiplesOfHundredFeet = 5;
+        }
+        if (Bits.testBit(multiplesOfFiveHundredFeet, 0)) multiplesOfHundredFeet = 6 - multiplesOfHundredFeet;
 
+        double altInFoot = REFERENCE_ALTITUDE_WHEN_NOT_Q + multiplesOfHundredFeet * 100 + multiplesOfFiveHundredFeet * 500;
+        return Units.convertFrom(altInFoot, Units.Length.FOOT);
+    }
 
-            altInFoot = REFERENCE_ALTITUDE_WHEN_NOT_Q + multiplesOfHundredFeet * 100 + multiplesOfFiveHundredFeet * 500;
-            alt = Units.convertFrom(altInFoot, Units.Length.FOOT);
+    /**
+     * @return an array of length 4096 where each element of index i contains
+     * the altitude in meters encoded by the altitude field i, or NaN if it is invalid
+     */
+    private static double[] buildAltitudeTable() {
+        double[] altitudes = new double[1 << ALT_DATA_CONTAINER.size()];
+        for (int i = 0; i < altitudes.length; ++i) {
+            altitudes[i] = decodeAltitude(i);
         }
-        int parity = Bits.testBit(payload, PARITY_INDEX) ? 1 : 0;
-        double longitude = (double) Bits.extractUInt(payload, LONGITUDE_START, LONGITUDE_AND_LATITUDE_SIZE) / NORMALISATION_FACTOR;
-        double latitude = (double) Bits.extractUInt(payload, LATITUDE_START, LONGITUDE_AND_LATITUDE_SIZE) / NORMALISATION_FACTOR;
+        return altitudes;
+    }
 
-        return new AirbornePositionMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), alt, parity, longitude, latitude);
+    /**
+     * @param payload (long) ME attribute of a positioning message
+     * @return (double) the altitude in meters contained in the given payload, or NaN if it is invalid
+     */
+    static double altitude(long payload) {
+        return ALTITUDES[ALT_DATA_CONTAINER.extract(payload)];
+    }
 
+    /**
+     * @param payload (long) ME attribute of a positioning message
+     * @return (int) the parity of the given payload, 0 if it is even and 1 if it is odd
+     */
+    static int parity(long payload) {
+        return PARITY.extract(payload);
+    }
+
+    /**
+     * @param payload (long) ME attribute of a positioning message
+     * @return (double) the local and normalized longitude contained in the given payload
+     */
+    static double x(long payload) {
+        return (double) LONGITUDE.extract(payload) / NORMALISATION_FACTOR;
+    }
+
+    /**
+     * @param payload (long) ME attribute of a positioning message
+     * @return (double) the local and normalized latitude contained in the given payload
+     */
+    static double y(long payload) {
+        return (double) LATITUDE.extract(payload) / NORMALISATION_FACTOR;
+    }
+
+    /**
+     * @param rawMessage (RawMessage)
+     * @return (AirbornePositionMessage) the given airborne in-flight positioning raw message, or null if the altitude contained in the message is invalid
+     */
+
+    public static AirbornePositionMessage of(RawMessage rawMessage) {
+        long payload = rawMessage.payload();
+        double alt = altitude(payload);
+        if (Double.isNaN(alt)) return null;
 
+        return new AirbornePositionMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), alt, parity(payload), x(payload), y(payload));
     }
 
 }
@@ -6,7 +6,7 @@
  */
 package ch.epfl.javions.adsb;
 
-import ch.epfl.javions.Bits;
+import ch.epfl.javions.BitField;
 import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
 import ch.epfl.javions.aircraft.IcaoAddress;
@@ -15,17 +15,17 @@ import java.util.Objects;
 
 public record AirborneVelocityMessage(long timeStampNs, IcaoAddress icaoAddress, double speed,
                                       double trackOrHeading) implements Message {
-    private static final int S_TYPE_START = 48, S_TYPE_SIZE = 3;
-    private static final int CONTENT_START = 21, CONTENT_SIZE = 22;
-    private static final int INVALID_SPEED = -1, SPEED_SOUTH_NORTH_START = 0, SPEED_SOUTH_NORTH_SIZE = 10,
-            SPEED_EAST_WEST_START = 11, SPEED_EAST_WEST_SIZE = 10;
+    private static final BitField S_TYPE = new BitField(48, 3);
+    private static final BitField CONTENT = new BitField(21, 22);
+    private static final int INVALID_SPEED = -1;
+    private static final BitField SPEED_SOUTH_NORTH = new BitField(0, 10), SPEED_EAST_WEST = new BitField(11, 10);
     private static final int FIRST_S_TYPE_FOR_GROUND_BASED_POSITION = 1, SECOND_S_TYPE_FOR_GROUND_BASED_POSITION = 2,
             FIRST_S_TYPE_FOR_AIRBORNE_POSITION = 3, SECOND_S_TYPE_FOR_AIRBORNE_POSITION = 4;
-    private static final int ANGLE_IN_TURN_START = 11, ANGLE_IN_TURN_SIZE = 10;
+    private static final BitField ANGLE_IN_TURN = new BitField(11, 10);
     private static final double ANGLE_IN_TURN_NORMALISATION_FACTOR = 1024.;
-    private static final int IS_CAP_AVAILABLE_BIT_INDEX = 21;
-    private static final int SPEED_IN_KNOT_START = 0, SPEED_IN_KNOT_SIZE = 10;
-    private static final int SIGN_SOUTH_NORTH_BIT_INDEX = 10, DIRECTION_EAST_WEST_BIT_INDEX = 21;
+    private static final BitField IS_CAP_AVAILABLE = BitField.bit(21);
+    private static final BitField SPEED_IN_KNOT = new BitField(0, 10);
+    private static final BitField SIGN_SOUTH_NORTH = BitField.bit(10), DIRECTION_EAST_WEST = BitField.bit(21);
 
     /**
      * Public AirborneVelocityMessage compact constructor
@@ -43,41 +43,78 @@ public record AirborneVelocityMessage(long timeStampNs, IcaoAddress icaoAddress,
     }
 
     /**
-     * @param rawMessage (RawMessage)
-     * @return (AirborneVelocityMessage) The airborne velocity message corresponding to the given raw message,
-     * or null of the subtype is invalid, or if the speed or direction of travel cannot be determined
+     * @param sType (int) subtype of a velocity message
+     * @return (boolean) true iff the subtype gives the speed over the ground in its east-west and south-north components
      */
-    public static AirborneVelocityMessage of(RawMessage rawMessage) {
+    private static boolean isGroundSpeed(int sType) {
+        return sType == FIRST_S_TYPE_FOR_GROUND_BASED_POSITION || sType == SECOND_S_TYPE_FOR_GROUND_BASED_POSITION;
+    }
 
-        int content = Bits.extractUInt(rawMessage.payload(), CONTENT_START, CONTENT_SIZE);
-        int sType = Bits.extractUInt(rawMessage.payload(), S_TYPE_START, S_TYPE_SIZE);
-        double speed, angle, speedInKnot;
-        int speedSouthNorthKnot, speedEastWestKnot;
-        if ((sType == FIRST_S_TYPE_FOR_GROUND_BASED_POSITION || sType == SECOND_S_TYPE_FOR_GROUND_BASED_POSITION) &&
-                (speedSouthNorthKnot = Bits.extractUInt(content, SPEED_SOUTH_NORTH_START, SPEED_SOUTH_NORTH_SIZE) - 1) != INVALID_SPEED &&
-                (speedEastWestKnot = Bits.extractUInt(content, SPEED_EAST_WEST_START, SPEED_EAST_WEST_SIZE) - 1) != INVALID_SPEED) {
+    /**
+     * @param sType (int) subtype of a velocity message
+     * @return (boolean) true iff the subtype gives the air speed and the heading
+     */
+    private static boolean isAirSpeed(int sType) {
+        return sType == FIRST_S_TYPE_FOR_AIRBORNE_POSITION || sType == SECOND_S_TYPE_FOR_AIRBORNE_POSITION;
+    }
+
+    /**
+     * @param payload (long) ME attribute of a velocity message
+     * @return (double) the speed in m/s contained in the given payload, or NaN if the subtype
+     * is invalid or if the speed or the direction of travel cannot be determined
+     */
+    static double speed(long payload) {
+        int content = CONTENT.extract(payload);
+        int sType = S_TYPE.extract(payload);
+        double speedInKnot;
+        if (isGroundSpeed(sType)) {
+            int speedSouthNorthKnot = SPEED_SOUTH_NORTH.extract(content) - 1;
+            int speedEastWestKnot = SPEED_EAST_WEST.extract(content) - 1;
+            if (speedSouthNorthKnot == INVALID_SPEED || speedEastWestKnot == INVALID_SPEED) return Double.NaN;
             speedInKnot = Math.hypot(speedSouthNorthKnot, speedEastWestKnot);
             if (sType == SECOND_S_TYPE_FOR_GROUND_BASED_POSITION) speedInKnot *= 4;
-            speed = Units.convertFrom(speedInKnot, Units.Speed.KNOT);
-            int signSouthNorth = Bits.testBit(content, SIGN_SOUTH_NORTH_BIT_INDEX) ? -1 : 1;
-            boolean directionEastWest = Bits.testBit(content, DIRECTION_EAST_WEST_BIT_INDEX);
-            angle = Math.atan2(speedEastWestKnot, signSouthNorth * speedSouthNorthKnot);
-            if (directionEastWest) angle = -angle + 2 * Math.PI;
-            return new AirborneVelocityMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), speed, angle);
-
+        } else if (isAirSpeed(sType) && IS_CAP_AVAILABLE.test(content) &&
+                (speedInKnot = SPEED_IN_KNOT.extract(content) - 1) != INVALID_SPEED) {
+            if (sType == SECOND_S_TYPE_FOR_AIRBORNE_POSITION) speedInKnot *= 4;
+        } else return Double.NaN;
+        return Units.convertFrom(speedInKnot, Units.Speed.KNOT);
+    }
 
+    /**
+     * @param payload (long) ME attribute of a velocity message
+     * @return (double) the direction of travel in radians contained in the given payload, or NaN if the subtype
+     * is invalid or if the speed or the direction of travel cannot be determined
+     */
+    static double trackOrHeading(long payload) {
+        int content = CONTENT.extract(payload);
+        int sType = S_TYPE.extract(payload);
+        if (isGroundSpeed(sType)) {
+            int speedSouthNorthKnot = SPEED_SOUTH_NORTH.extract(content) - 1;
+            int speedEastWestKnot = SPEED_EAST_WEST.extract(content) - 1;
+            if (speedSouthNorthKnot == INVALID_SPEED || speedEastWestKnot == INVALID_SPEED) return Double.NaN;
+            int signSouthNorth = SIGN_SOUTH_NORTH.test(content) ? -1 : 1;
+            double angle = Math.atan2(speedEastWestKnot, signSouthNorth * speedSouthNorthKnot);
+            return DIRECTION_EAST_WEST.test(content) ? -angle + 2 * Math.PI : angle;
         }
-        if ((sType == FIRST_S_TYPE_FOR_AIRBORNE_POSITION || sType == SECOND_S_TYPE_FOR_AIRBORNE_POSITION) &&
-                Bits.testBit(content, IS_CAP_AVAILABLE_BIT_INDEX) &&
-                (speedInKnot = Bits.extractUInt(content, SPEED_IN_KNOT_START, SPEED_IN_KNOT_SIZE) - 1) != -1) {
-            double angleInTurn = Bits.extractUInt(content, ANGLE_IN_TURN_START, ANGLE_IN_TURN_SIZE) / ANGLE_IN_TURN_NORMALISATION_FACTOR;
-            angle = Units.convertFrom(angleInTurn, Units.Angle.TURN);
-            if (sType == SECOND_S_TYPE_FOR_AIRBORNE_POSITION) speedInKnot *= 4;
-            speed = Units.convertFrom(speedInKnot, Units.Speed.KNOT);
-            return new AirborneVelocityMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), speed, angle);
+        if (isAirSpeed(sType) && IS_CAP_AVAILABLE.test(content) &&
+                SPEED_IN_KNOT.extract(content) - 1 != INVALID_SPEED) {
+            double angleInTurn = ANGLE_IN_TURN.extract(content) / ANGLE_IN_TURN_NORMALISATION_FACTOR;
+            return Units.convertFrom(angleInTurn, Units.Angle.TURN);
         }
+        return Double.NaN;
+    }
+
+    /**
+     * @param rawMessage (RawMessage)
+     * @return (AirborneVelocityMessage) The airborne velocity message corresponding to the given raw message,
+     * or null of the subtype is invalid, or if the speed or direction of travel cannot be determined
+     */
+    public static AirborneVelocityMessage of(RawMessage rawMessage) {
+        long payload = rawMessage.payload();
+        double speed = speed(payload);
+        if (Double.isNaN(speed)) return null;
 
-        return null;
+        return new AirborneVelocityMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), speed, trackOrHeading(payload));
     }
 
 }
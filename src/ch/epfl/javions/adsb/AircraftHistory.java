@@ -0,0 +1,319 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.aircraft.IcaoAddress;
+import ch.epfl.javions.aircraft.IcaoAddressMap;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class represents the history of the states of the aircraft, made of one row per update, which outlives the
+ * purge of the aircraft
+ * <p>
+ * The rows are only ever appended, to chunks of fixed capacity storing each column in its own primitive array.
+ * Every chunk is indexed by the smallest and largest time stamps, longitudes and latitudes of its rows, so that a
+ * query only scans the chunks which may contain matching rows. The memory used is bounded by a retention window:
+ * once all the rows of the oldest chunk are older than the window, measured from the time stamp of the last row
+ * appended, the chunk is dropped.
+ * <p>
+ * The history is thread-safe: rows can be appended by one thread while other threads query it. A query only holds
+ * the lock while it selects the chunks to scan and the number of their rows, which are never modified afterwards
+ * as long as the chunk is not filled again, so that the rows are scanned, and the action applied, without blocking
+ * the appends. The last chunk dropped is only filled again if no query is scanning any chunk.
+ * <p>
+ * The time stamps of the rows are the ones of the messages, which only make sense within a run. They are mapped
+ * to the wall clock by assuming that the first row was appended when its message was received, and that the time
+ * stamps then advance at the rate of the wall clock, as they do when the messages are received live.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class AircraftHistory {
+    /**
+     * default number of rows of a chunk
+     */
+    public static final int DEFAULT_CHUNK_CAPACITY = 4096;
+    private static final long NANOSECONDS_PER_SECOND = 1_000_000_000L;
+    private final long retentionNs;
+    private final int chunkCapacity;
+    private final Deque<Chunk> chunks;
+    private final ReadWriteLock lock;
+    private final AtomicInteger scanningQueries;
+    private Chunk spareChunk;
+    private long lastTimeStampNs;
+    private volatile long epochOffsetNs;
+    private volatile boolean hasEpochOffset;
+
+    /**
+     * This interface represents an action applied to the rows of the history
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        /**
+         * @param timeStampNs  (long) time stamp of the update
+         * @param icaoAddress  (int) ICAO address of the aircraft, as an integer
+         * @param longitudeT32 (int) longitude of the aircraft, in T32
+         * @param latitudeT32  (int) latitude of the aircraft, in T32
+         * @param altitude     (double) altitude of the aircraft, in meters, or NaN if it is unknown
+         * @param velocity     (double) velocity of the aircraft, in meters per second, or NaN if it is unknown
+         */
+        void accept(long timeStampNs, int icaoAddress, int longitudeT32, int latitudeT32, double altitude,
+                    double velocity);
+    }
+
+    /**
+     * A chunk of rows, stored by column, with the bounds of its rows
+     */
+    private static final class Chunk {
+        private final long[] timeStamps;
+        private final int[] icaoAddresses, longitudes, latitudes;
+        private final float[] altitudes, velocities;
+        private int size;
+        private long minTimeStampNs, maxTimeStampNs;
+        private int minLongitudeT32, maxLongitudeT32, minLatitudeT32, maxLatitudeT32;
+
+        private Chunk(int capacity) {
+            timeStamps = new long[capacity];
+            icaoAddresses = new int[capacity];
+            longitudes = new int[capacity];
+            latitudes = new int[capacity];
+            altitudes = new float[capacity];
+            velocities = new float[capacity];
+        }
+
+        private boolean isFull() {
+            return size == timeStamps.length;
+        }
+
+        private void append(long timeStampNs, int icaoAddress, int longitudeT32, int latitudeT32, double altitude,
+                            double velocity) {
+            if (size == 0) {
+                minTimeStampNs = maxTimeStampNs = timeStampNs;
+                minLongitudeT32 = maxLongitudeT32 = longitudeT32;
+                minLatitudeT32 = maxLatitudeT32 = latitudeT32;
+            } else {
+                minTimeStampNs = Math.min(minTimeStampNs, timeStampNs);
+                maxTimeStampNs = Math.max(maxTimeStampNs, timeStampNs);
+                minLongitudeT32 = Math.min(minLongitudeT32, longitudeT32);
+                maxLongitudeT32 = Math.max(maxLongitudeT32, longitudeT32);
+                minLatitudeT32 = Math.min(minLatitudeT32, latitudeT32);
+                maxLatitudeT32 = Math.max(maxLatitudeT32, latitudeT32);
+            }
+            timeStamps[size] = timeStampNs;
+            icaoAddresses[size] = icaoAddress;
+            longitudes[size] = longitudeT32;
+            latitudes[size] = latitudeT32;
+            altitudes[size] = (float) altitude;
+            velocities[size] = (float) velocity;
+            ++size;
+        }
+    }
+
+    /**
+     * public AircraftHistory constructor
+     * Returns an empty history whose chunks have the default capacity
+     *
+     * @param retentionNs (long) time in nanoseconds during which the rows are kept at least
+     * @throws IllegalArgumentException if the retention is negative
+     */
+    public AircraftHistory(long retentionNs) {
+        this(retentionNs, DEFAULT_CHUNK_CAPACITY);
+    }
+
+    /**
+     * public AircraftHistory constructor
+     * Returns an empty history
+     *
+     * @param retentionNs   (long) time in nanoseconds during which the rows are kept at least
+     * @param chunkCapacity (int) number of rows of a chunk
+     * @throws IllegalArgumentException if the retention is negative or if the capacity is not strictly positive
+     */
+    public AircraftHistory(long retentionNs, int chunkCapacity) {
+        Preconditions.checkArgument(retentionNs >= 0 && chunkCapacity > 0);
+        this.retentionNs = retentionNs;
+        this.chunkCapacity = chunkCapacity;
+        chunks = new ArrayDeque<>();
+        lock = new ReentrantReadWriteLock();
+        scanningQueries = new AtomicInteger();
+    }
+
+    /**
+     * Appends a row, then drops the chunks whose rows are all older than the retention window
+     *
+     * @param timeStampNs  (long) time stamp of the update
+     * @param icaoAddress  (int) ICAO address of the aircraft, as an integer
+     * @param longitudeT32 (int) longitude of the aircraft, in T32
+     * @param latitudeT32  (int) latitude of the aircraft, in T32
+     * @param altitude     (double) altitude of the aircraft, in meters, or NaN if it is unknown
+     * @param velocity     (double) velocity of the aircraft, in meters per second, or NaN if it is unknown
+     */
+    public void append(long timeStampNs, int icaoAddress, int longitudeT32, int latitudeT32, double altitude,
+                       double velocity) {
+        lock.writeLock().lock();
+        try {
+            if (!hasEpochOffset) {
+                epochOffsetNs = epochNs(Instant.now()) - timeStampNs;
+                hasEpochOffset = true;
+            }
+            Chunk last = chunks.peekLast();
+            if (last == null || last.isFull()) {
+                // a query may still be scanning the spare chunk, which it selected before the chunk was dropped
+                last = spareChunk != null && scanningQueries.get() == 0 ? spareChunk : new Chunk(chunkCapacity);
+                spareChunk = null;
+                last.size = 0;
+                chunks.addLast(last);
+            }
+            last.append(timeStampNs, icaoAddress, longitudeT32, latitudeT32, altitude, velocity);
+            lastTimeStampNs = timeStampNs;
+            // the chunk being filled is never dropped, and the last one dropped is kept to be filled again
+            while (chunks.peekFirst() != last && lastTimeStampNs - chunks.peekFirst().maxTimeStampNs > retentionNs) {
+                spareChunk = chunks.removeFirst();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a row made of the current position, altitude and velocity of the given aircraft
+     *
+     * @param timeStampNs (long) time stamp of the update
+     * @param state       (AircraftState) state of an aircraft having a position
+     * @throws NullPointerException if the aircraft has no position
+     */
+    public void append(long timeStampNs, AircraftState state) {
+        append(timeStampNs, state.address().asInt(), state.getPosition().longitudeT32(),
+                state.getPosition().latitudeT32(), state.getAltitude(), state.getVelocity());
+    }
+
+    /**
+     * @return (int) the number of rows of the history
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (Chunk chunk : chunks) size += chunk.size;
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the given action to every row whose time stamp is in the given interval and whose position is in the
+     * given box, bounds included, from the oldest chunk to the most recent one. The box crosses the antimeridian
+     * if its minimal longitude is greater than its maximal one. The rows appended during the query may be skipped
+     *
+     * @param fromNs          (long) smallest time stamp
+     * @param toNs            (long) largest time stamp
+     * @param minLongitudeT32 (int) western longitude of the box, in T32
+     * @param maxLongitudeT32 (int) eastern longitude of the box, in T32
+     * @param minLatitudeT32  (int) southern latitude of the box, in T32
+     * @param maxLatitudeT32  (int) northern latitude of the box, in T32
+     * @param action          (RowConsumer) action
+     */
+    public void query(long fromNs, long toNs, int minLongitudeT32, int maxLongitudeT32, int minLatitudeT32,
+                      int maxLatitudeT32, RowConsumer action) {
+        boolean crossesAntimeridian = minLongitudeT32 > maxLongitudeT32;
+        List<Chunk> selectedChunks = new ArrayList<>();
+        List<Integer> selectedSizes = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Chunk chunk : chunks) {
+                if (chunk.maxTimeStampNs < fromNs || chunk.minTimeStampNs > toNs
+                        || chunk.maxLatitudeT32 < minLatitudeT32 || chunk.minLatitudeT32 > maxLatitudeT32) continue;
+                boolean longitudesOverlap = crossesAntimeridian
+                        ? chunk.maxLongitudeT32 >= minLongitudeT32 || chunk.minLongitudeT32 <= maxLongitudeT32
+                        : chunk.maxLongitudeT32 >= minLongitudeT32 && chunk.minLongitudeT32 <= maxLongitudeT32;
+                if (!longitudesOverlap) continue;
+                selectedChunks.add(chunk);
+                selectedSizes.add(chunk.size);
+            }
+            scanningQueries.incrementAndGet();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            for (int c = 0; c < selectedChunks.size(); ++c) {
+                Chunk chunk = selectedChunks.get(c);
+                for (int i = 0, size = selectedSizes.get(c); i < size; ++i) {
+                    long timeStampNs = chunk.timeStamps[i];
+                    int longitudeT32 = chunk.longitudes[i], latitudeT32 = chunk.latitudes[i];
+                    if (timeStampNs < fromNs || timeStampNs > toNs
+                            || latitudeT32 < minLatitudeT32 || latitudeT32 > maxLatitudeT32) continue;
+                    boolean longitudeInside = crossesAntimeridian
+                            ? longitudeT32 >= minLongitudeT32 || longitudeT32 <= maxLongitudeT32
+                            : longitudeT32 >= minLongitudeT32 && longitudeT32 <= maxLongitudeT32;
+                    if (!longitudeInside) continue;
+                    action.accept(timeStampNs, chunk.icaoAddresses[i], longitudeT32, latitudeT32,
+                            chunk.altitudes[i], chunk.velocities[i]);
+                }
+            }
+        } finally {
+            scanningQueries.decrementAndGet();
+        }
+    }
+
+    /**
+     * Same as the previous method, returning the aircraft of the rows rather than applying an action to them
+     *
+     * @param fromNs          (long) smallest time stamp
+     * @param toNs            (long) largest time stamp
+     * @param minLongitudeT32 (int) western longitude of the box, in T32
+     * @param maxLongitudeT32 (int) eastern longitude of the box, in T32
+     * @param minLatitudeT32  (int) southern latitude of the box, in T32
+     * @param maxLatitudeT32  (int) northern latitude of the box, in T32
+     * @return (List<IcaoAddress>) the addresses of the aircraft which were in the box during the interval, each of
+     * them once, in the order of their first row
+     */
+    public List<IcaoAddress> aircraftWithin(long fromNs, long toNs, int minLongitudeT32, int maxLongitudeT32,
+                                            int minLatitudeT32, int maxLatitudeT32) {
+        IcaoAddressMap<IcaoAddress> seen = new IcaoAddressMap<>();
+        List<IcaoAddress> aircraft = new ArrayList<>();
+        query(fromNs, toNs, minLongitudeT32, maxLongitudeT32, minLatitudeT32, maxLatitudeT32,
+                (timeStampNs, icaoAddress, longitudeT32, latitudeT32, altitude, velocity) -> {
+                    if (seen.containsKey(icaoAddress)) return;
+                    IcaoAddress address = IcaoAddress.of(icaoAddress);
+                    seen.put(icaoAddress, address);
+                    aircraft.add(address);
+                });
+        return aircraft;
+    }
+
+    /**
+     * @param instant (Instant) an instant of the wall clock
+     * @return (long) the time stamp the rows appended at that instant have, which can be given to query
+     * @throws IllegalStateException if no row was appended yet
+     */
+    public long timeStampNs(Instant instant) {
+        if (!hasEpochOffset) throw new IllegalStateException();
+        return epochNs(instant) - epochOffsetNs;
+    }
+
+    /**
+     * @param timeStampNs (long) time stamp of a row
+     * @return (Instant) the instant of the wall clock at which the row was appended
+     * @throws IllegalStateException if no row was appended yet
+     */
+    public Instant instant(long timeStampNs) {
+        if (!hasEpochOffset) throw new IllegalStateException();
+        return Instant.EPOCH.plusNanos(timeStampNs + epochOffsetNs);
+    }
+
+    /**
+     * @param instant (Instant)
+     * @return (long) the number of nanoseconds between the epoch and the given instant
+     */
+    private static long epochNs(Instant instant) {
+        return instant.getEpochSecond() * NANOSECONDS_PER_SECOND + instant.getNano();
+    }
+}
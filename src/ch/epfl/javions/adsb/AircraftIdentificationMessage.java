@@ -1,6 +1,6 @@
 package ch.epfl.javions.adsb;
 
-import ch.epfl.javions.Bits;
+import ch.epfl.javions.BitField;
 import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.aircraft.IcaoAddress;
 
@@ -20,9 +20,30 @@ public record AircraftIdentificationMessage(long timeStampNs, IcaoAddress icaoAd
             OFFSET_FOR_UPPERCASE_ALPHABET = 64, ENCODED_CHARACTER_AS_INT_SIZE = 6, ENCODED_CHARACTER_AS_INT_START = 42,
             ENCODED_CHARACTER_AS_INT_FINISH = 0;
     private static final int ENCODED_AS_SPACE = 32, ENCODED_AS_DIGIT_LOWER_BOUND = 48, ENCODED_AS_DIGIT_UPPER_BOUND = 57;
-    private static final int CATEGORY_SECOND_PART_START = 48, CATEGORY_SECOND_PART_SIZE = 3, SPECIAL_TYPE_CODE_CONSTANT = 14,
-            CATEGORY_FIRST_PART_STARTING_INDEX = CATEGORY_SECOND_PART_SIZE + 1;
+    private static final BitField CATEGORY_SECOND_PART = new BitField(48, 3);
+    private static final int SPECIAL_TYPE_CODE_CONSTANT = 14, CATEGORY_FIRST_PART_STARTING_INDEX = CATEGORY_SECOND_PART.size() + 1;
+    private static final int CALL_SIGN_LENGTH = 8, ENCODED_CALL_SIGN_SIZE = CALL_SIGN_LENGTH * ENCODED_CHARACTER_AS_INT_SIZE;
+    private static final long ENCODED_CALL_SIGN_MASK = (1L << ENCODED_CALL_SIGN_SIZE) - 1;
+    private static final char INVALID_CHARACTER = 0;
+    /**
+     * decoded characters indexed by their 6-bit code (INVALID_CHARACTER for invalid codes)
+     */
+    private static final char[] CHARACTERS = buildCharacterTable();
+    private static final int CALL_SIGN_CACHE_BITS = 10;
+    private static final long CALL_SIGN_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    /**
+     * direct-mapped cache of the last call signs decoded, indexed by a hash of their 48-bit encoding
+     */
+    private static final CachedCallSign[] CALL_SIGN_CACHE = new CachedCallSign[1 << CALL_SIGN_CACHE_BITS];
 
+    /**
+     * An entry of the call sign cache
+     *
+     * @param encoded  (long) the 48 bits encoding the call sign in a message
+     * @param callSign (CallSign) the decoded call sign, shared by all the messages carrying it
+     */
+    private record CachedCallSign(long encoded, CallSign callSign) {
+    }
 
     /**
      * Public AircraftIdentificationMessage compact constructor
@@ -42,33 +63,85 @@ public record AircraftIdentificationMessage(long timeStampNs, IcaoAddress icaoAd
 
 
     /**
-     * @param rawMessage (RawMessage)
-     * @return (AircraftIdentificationMessage) the identification message corresponding to the
-     * given raw message, or null if at least one of its call sign's characters is invalid
+     * @return an array of length 64 where each element of index i contains
+     * the character encoded by i, or INVALID_CHARACTER if i does not encode any
      */
-    public static AircraftIdentificationMessage of(RawMessage rawMessage) {
-        long payload = rawMessage.payload();
-        StringBuilder b = new StringBuilder();
-        int encodedCharacterAsInt;
-        char decodedChar;
+    private static char[] buildCharacterTable() {
+        char[] characters = new char[1 << ENCODED_CHARACTER_AS_INT_SIZE];
+        for (int i = 0; i < characters.length; ++i) {
+            if (ENCODED_AS_UPPERCASE_ALPHABET_LOWER_BOUND <= i && i <= ENCODED_AS_UPPERCASE_ALPHABET_UPPER_BOUND)
+                characters[i] = (char) (OFFSET_FOR_UPPERCASE_ALPHABET + i);
+            else if ((ENCODED_AS_DIGIT_LOWER_BOUND <= i && i <= ENCODED_AS_DIGIT_UPPER_BOUND) || i == ENCODED_AS_SPACE)
+                characters[i] = (char) i;
+            else characters[i] = INVALID_CHARACTER;
+        }
+        return characters;
+    }
+
+    /**
+     * @param payload (long) ME attribute of an identification message
+     * @return (CallSign) the call sign contained in the given payload, shared with the previous messages carrying
+     * the same one whenever possible, or null if at least one of its characters is invalid
+     */
+    static CallSign callSign(long payload) {
+        long encoded = encodedCallSign(payload);
+        int index = (int) ((encoded * CALL_SIGN_HASH_MULTIPLIER) >>> (Long.SIZE - CALL_SIGN_CACHE_BITS));
+        CachedCallSign cached = CALL_SIGN_CACHE[index];
+        if (cached != null && cached.encoded() == encoded) return cached.callSign();
+
+        char[] decoded = new char[CALL_SIGN_LENGTH];
+        int length = 0;
+        for (int i = ENCODED_CHARACTER_AS_INT_START, j = 0; i >= ENCODED_CHARACTER_AS_INT_FINISH; i -= ENCODED_CHARACTER_AS_INT_SIZE, ++j) {
+            char decodedChar = CHARACTERS[(int) (encoded >>> i) & ((1 << ENCODED_CHARACTER_AS_INT_SIZE) - 1)];
+            if (decodedChar == INVALID_CHARACTER) return null;
+            decoded[j] = decodedChar;
+            if (decodedChar != ' ') length = j + 1;
+        }
 
+        CallSign callSign = new CallSign(new String(decoded, 0, length));
+        CALL_SIGN_CACHE[index] = new CachedCallSign(encoded, callSign);
+        return callSign;
+    }
+
+    /**
+     * @param payload (long) ME attribute of an identification message
+     * @return (boolean) true iff all the characters of the call sign contained in the given payload are valid
+     */
+    static boolean isValidCallSign(long payload) {
         for (int i = ENCODED_CHARACTER_AS_INT_START; i >= ENCODED_CHARACTER_AS_INT_FINISH; i -= ENCODED_CHARACTER_AS_INT_SIZE) {
-            encodedCharacterAsInt = Bits.extractUInt(payload, i, ENCODED_CHARACTER_AS_INT_SIZE);
-            if (ENCODED_AS_UPPERCASE_ALPHABET_LOWER_BOUND <= encodedCharacterAsInt && encodedCharacterAsInt <= ENCODED_AS_UPPERCASE_ALPHABET_UPPER_BOUND)
-                decodedChar = (char) (OFFSET_FOR_UPPERCASE_ALPHABET + encodedCharacterAsInt);
-            else if (ENCODED_AS_DIGIT_LOWER_BOUND <= encodedCharacterAsInt && encodedCharacterAsInt <= ENCODED_AS_DIGIT_UPPER_BOUND)
-                decodedChar = (char) (encodedCharacterAsInt);
-            else if (encodedCharacterAsInt == ENCODED_AS_SPACE) decodedChar = ' ';
-            else return null;
-            b.append(decodedChar);
+            if (CHARACTERS[(int) (payload >>> i) & ((1 << ENCODED_CHARACTER_AS_INT_SIZE) - 1)] == INVALID_CHARACTER) return false;
         }
+        return true;
+    }
 
-        int category = ((SPECIAL_TYPE_CODE_CONSTANT - rawMessage.typeCode()) << CATEGORY_FIRST_PART_STARTING_INDEX) |
-                Bits.extractUInt(payload, CATEGORY_SECOND_PART_START, CATEGORY_SECOND_PART_SIZE);
+    /**
+     * @param payload (long) ME attribute of an identification message
+     * @return (long) the 48 bits encoding the call sign contained in the given payload
+     */
+    static long encodedCallSign(long payload) {
+        return payload & ENCODED_CALL_SIGN_MASK;
+    }
 
-        CallSign callSign = new CallSign(b.toString().stripTrailing());
-        return new AircraftIdentificationMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), category, callSign);
+    /**
+     * @param payload (long) ME attribute of an identification message
+     * @return (int) the aircraft category contained in the given payload
+     */
+    static int category(long payload) {
+        return ((SPECIAL_TYPE_CODE_CONSTANT - RawMessage.typeCode(payload)) << CATEGORY_FIRST_PART_STARTING_INDEX) |
+                CATEGORY_SECOND_PART.extract(payload);
+    }
+
+    /**
+     * @param rawMessage (RawMessage)
+     * @return (AircraftIdentificationMessage) the identification message corresponding to the
+     * given raw message, or null if at least one of its call sign's characters is invalid
+     */
+    public static AircraftIdentificationMessage of(RawMessage rawMessage) {
+        long payload = rawMessage.payload();
+        CallSign callSign = callSign(payload);
+        if (callSign == null) return null;
 
+        return new AircraftIdentificationMessage(rawMessage.timeStampNs(), rawMessage.icaoAddress(), category(payload), callSign);
     }
 
 
@@ -0,0 +1,290 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.aircraft.AircraftData;
+import ch.epfl.javions.aircraft.AircraftDescription;
+import ch.epfl.javions.aircraft.AircraftRegistration;
+import ch.epfl.javions.aircraft.AircraftTypeDesignator;
+import ch.epfl.javions.aircraft.IcaoAddress;
+import ch.epfl.javions.aircraft.WakeTurbulenceCategory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * This class represents the state of an aircraft, stored in plain fields, which does not depend on JavaFX
+ * <p>
+ * The trajectory is made of the positions of the aircraft at which its altitude was known: a point is added
+ * whenever the aircraft gets a new position, and the last point is replaced when the altitude of the aircraft is
+ * received in the same message as its position. The state also records which of its fields changed, among the
+ * constants of this class, until the changes are cleared, so that they can be published without comparing the
+ * states.
+ * <p>
+ * A state is not thread-safe: it must only be accessed by one thread at a time.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class AircraftState implements AircraftStateSetter {
+    /**
+     * bits of the fields of a state, as returned by changes()
+     */
+    public static final int LAST_MESSAGE_TIME_STAMP = 1, CATEGORY = 1 << 1, CALL_SIGN = 1 << 2, POSITION = 1 << 3,
+            ALTITUDE = 1 << 4, VELOCITY = 1 << 5, TRACK_OR_HEADING = 1 << 6, TRAJECTORY = 1 << 7;
+    /**
+     * bits of all the fields of a state
+     */
+    public static final int ALL = (1 << 8) - 1;
+    private final IcaoAddress address;
+    private final AircraftData aircraftData;
+    private final Trajectory trajectory;
+    private long lastMessageTimeStampNs, oldMessageTimeStamps;
+    private int category;
+    private CallSign callSign;
+    private GeoPos position;
+    private double altitude, velocity, trackOrHeading;
+    private int changes;
+
+    /**
+     * public AircraftState constructor
+     * Returns the state of an aircraft which has not sent any message yet, whose trajectory has the default capacity
+     *
+     * @param address      (IcaoAddress) the ICAO address of the aircraft
+     * @param aircraftData (AircraftData) the data of the aircraft, or null if it is unknown
+     * @throws NullPointerException if the address is null
+     */
+    public AircraftState(IcaoAddress address, AircraftData aircraftData) {
+        this(address, aircraftData, Trajectory.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * public AircraftState constructor
+     * Returns the state of an aircraft which has not sent any message yet
+     *
+     * @param address            (IcaoAddress) the ICAO address of the aircraft
+     * @param aircraftData       (AircraftData) the data of the aircraft, or null if it is unknown
+     * @param trajectoryCapacity (int) the maximum number of points of the trajectory
+     * @throws NullPointerException     if the address is null
+     * @throws IllegalArgumentException if the capacity is smaller than 2
+     */
+    public AircraftState(IcaoAddress address, AircraftData aircraftData, int trajectoryCapacity) {
+        this.address = Objects.requireNonNull(address);
+        this.aircraftData = aircraftData;
+        trajectory = new Trajectory(trajectoryCapacity, Trajectory.DEFAULT_TOLERANCE);
+        altitude = Double.NaN;
+        velocity = Double.NaN;
+        oldMessageTimeStamps = -1;
+    }
+
+    /**
+     * @return (IcaoAddress) the ICAO address of the aircraft
+     */
+    public IcaoAddress address() {
+        return address;
+    }
+
+    /**
+     * @return (AircraftData) the data of the aircraft, or null if it is unknown
+     */
+    public AircraftData getAircraftData() {
+        return aircraftData;
+    }
+
+    /**
+     * @return (long) the time stamp of the last message of the aircraft
+     */
+    public long getLastMessageTimeStampNs() {
+        return lastMessageTimeStampNs;
+    }
+
+    /**
+     * @return (int) the category of the aircraft
+     */
+    public int getCategory() {
+        return category;
+    }
+
+    /**
+     * @return (CallSign) the call sign of the aircraft, or null if it is unknown
+     */
+    public CallSign getCallSign() {
+        return callSign;
+    }
+
+    /**
+     * @return (GeoPos) the position of the aircraft, or null if it is unknown
+     */
+    public GeoPos getPosition() {
+        return position;
+    }
+
+    /**
+     * @return (double) the altitude of the aircraft, in meters, or NaN if it is unknown
+     */
+    public double getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * @return (double) the velocity of the aircraft, in meters per second, or NaN if it is unknown
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return (double) the track or heading of the aircraft, in radians
+     */
+    public double getTrackOrHeading() {
+        return trackOrHeading;
+    }
+
+    /**
+     * @return (Trajectory) the trajectory of the aircraft, which must not be modified
+     */
+    public Trajectory getTrajectory() {
+        return trajectory;
+    }
+
+    /**
+     * @return (int) bits of the fields that changed since the changes were last cleared, among the constants of
+     * this class
+     */
+    public int changes() {
+        return changes;
+    }
+
+    /**
+     * Forgets the changes made to the state so far
+     */
+    public void clearChanges() {
+        changes = 0;
+    }
+
+    /**
+     * Writes the fields of this state, including the data of the aircraft and its trajectory, but not its address
+     *
+     * @param out (DataOutput)
+     * @throws IOException in case of input/output error
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeBoolean(aircraftData != null);
+        if (aircraftData != null) {
+            out.writeUTF(aircraftData.registration().string());
+            out.writeUTF(aircraftData.typeDesignator().string());
+            out.writeUTF(aircraftData.model());
+            out.writeUTF(aircraftData.description().string());
+            out.writeUTF(aircraftData.wakeTurbulenceCategory().name());
+        }
+        out.writeLong(lastMessageTimeStampNs);
+        out.writeInt(category);
+        out.writeBoolean(callSign != null);
+        if (callSign != null) out.writeUTF(callSign.string());
+        out.writeBoolean(position != null);
+        if (position != null) {
+            out.writeInt(position.longitudeT32());
+            out.writeInt(position.latitudeT32());
+        }
+        out.writeDouble(altitude);
+        out.writeDouble(velocity);
+        out.writeDouble(trackOrHeading);
+        trajectory.writeTo(out);
+    }
+
+    /**
+     * Reads a state written by writeTo, all of whose fields are considered as changed
+     *
+     * @param address            (IcaoAddress) the ICAO address of the aircraft
+     * @param in                 (DataInput)
+     * @param timeShiftNs        (long) shift added to the time stamps read
+     * @param trajectoryCapacity (int) the maximum number of points of the trajectory
+     * @return (AircraftState) the state read
+     * @throws IOException              in case of input/output error, or if the fields read are invalid
+     * @throws IllegalArgumentException if the capacity is smaller than 2
+     */
+    public static AircraftState readFrom(IcaoAddress address, DataInput in, long timeShiftNs, int trajectoryCapacity)
+            throws IOException {
+        Preconditions.checkArgument(trajectoryCapacity >= 2);
+        AircraftData aircraftData = null;
+        try {
+            if (in.readBoolean()) {
+                aircraftData = new AircraftData(new AircraftRegistration(in.readUTF()),
+                        new AircraftTypeDesignator(in.readUTF()), in.readUTF(), new AircraftDescription(in.readUTF()),
+                        WakeTurbulenceCategory.valueOf(in.readUTF()));
+            }
+            AircraftState state = new AircraftState(address, aircraftData, trajectoryCapacity);
+            state.lastMessageTimeStampNs = in.readLong() + timeShiftNs;
+            state.category = in.readInt();
+            state.callSign = in.readBoolean() ? new CallSign(in.readUTF()) : null;
+            state.position = in.readBoolean() ? AircraftStateAccumulator.readPosition(in) : null;
+            state.altitude = in.readDouble();
+            state.velocity = in.readDouble();
+            state.trackOrHeading = in.readDouble();
+            state.trajectory.readFrom(in, timeShiftNs);
+            state.changes = ALL;
+            return state;
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void setLastMessageTimeStampNs(long timeStampNs) {
+        if (timeStampNs != lastMessageTimeStampNs) changes |= LAST_MESSAGE_TIME_STAMP;
+        lastMessageTimeStampNs = timeStampNs;
+    }
+
+    @Override
+    public void setCategory(int category) {
+        if (category != this.category) changes |= CATEGORY;
+        this.category = category;
+    }
+
+    @Override
+    public void setCallSign(CallSign callSign) {
+        if (!Objects.equals(callSign, this.callSign)) changes |= CALL_SIGN;
+        this.callSign = callSign;
+    }
+
+    @Override
+    public void setPosition(GeoPos position) {
+        if (!Double.isNaN(altitude)) {
+            trajectory.add(position, altitude, lastMessageTimeStampNs);
+            changes |= TRAJECTORY;
+        }
+        oldMessageTimeStamps = lastMessageTimeStampNs;
+        if (!position.equals(this.position)) changes |= POSITION;
+        this.position = position;
+    }
+
+    @Override
+    public void setAltitude(double altitude) {
+        if (position != null) {
+            if (trajectory.isEmpty()) {
+                trajectory.add(position, altitude, lastMessageTimeStampNs);
+                changes |= TRAJECTORY;
+            } else if (lastMessageTimeStampNs == oldMessageTimeStamps) {
+                trajectory.replaceLast(position, altitude, lastMessageTimeStampNs);
+                changes |= TRAJECTORY;
+            }
+        }
+        oldMessageTimeStamps = lastMessageTimeStampNs;
+        if (Double.compare(altitude, this.altitude) != 0) changes |= ALTITUDE;
+        this.altitude = altitude;
+    }
+
+    @Override
+    public void setVelocity(double velocity) {
+        if (Double.compare(velocity, this.velocity) != 0) changes |= VELOCITY;
+        this.velocity = velocity;
+    }
+
+    @Override
+    public void setTrackOrHeading(double trackOrHeading) {
+        if (Double.compare(trackOrHeading, this.trackOrHeading) != 0) changes |= TRACK_OR_HEADING;
+        this.trackOrHeading = trackOrHeading;
+    }
+}
@@ -1,6 +1,20 @@
 /**
  * This class represents an object that accumulates ADS-B messages from
  * a single aircraft to determine its state over time
+ * <p>
+ * A position is decoded globally from the last even and odd messages when they are close enough in time.
+ * Otherwise, it is decoded locally from the last message alone, using as a reference the last position of
+ * the aircraft if it is recent enough, or else the position of the receiver, in which case the decoded
+ * position is only trusted if it is at most 100 NM from the receiver.
+ * <p>
+ * A position decoded locally always lies within half a zone, about 180 NM, of its reference: an aircraft farther
+ * from the receiver than that is decoded as an aliased position, about 360 NM minus its true distance from the
+ * receiver. Since an aircraft is only received within the radio horizon, about 250 NM at cruise altitude, an
+ * aliased position is at least about 110 NM from the receiver, and the 100 NM limit rejects it. The first global
+ * decoding then replaces a position decoded from the receiver, whatever its distance.
+ * <p>
+ * The last even and odd halves of the position are kept as primitives rather than as messages, so that their time
+ * stamps can be rebased when the accumulator is restored from a file.
  *
  * @author: Bouden Omar (341381)
  * @author: Tlili Ahmed (344939)
@@ -8,13 +22,23 @@
 package ch.epfl.javions.adsb;
 
 import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Units;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Objects;
 
 public final class AircraftStateAccumulator<T extends AircraftStateSetter> {
     private static final long DELTA_TIME_LIMIT = 10_000_000_000L;
+    // well below half a zone, so that the aliased positions of the aircraft received from farther are rejected
+    private static final double RECEIVER_RANGE = 100 * Units.Length.NAUTICAL_MILE;
     private final T stateSetter;
-    private AirbornePositionMessage even, odd;
+    private final boolean[] hasCpr;
+    private final double[] cprX, cprY;
+    private final long[] cprTimeStampNs;
+    private GeoPos lastPosition;
+    private long lastPositionTimeStampNs;
 
     /**
      * Public AircraftStateAccumulator default constructor
@@ -24,8 +48,10 @@ public final class AircraftStateAccumulator<T extends AircraftStateSetter> {
      */
     public AircraftStateAccumulator(T stateSetter) {
         this.stateSetter = Objects.requireNonNull(stateSetter);
-        even = null;
-        odd = null;
+        hasCpr = new boolean[2];
+        cprX = new double[2];
+        cprY = new double[2];
+        cprTimeStampNs = new long[2];
     }
 
     /**
@@ -37,12 +63,22 @@ public final class AircraftStateAccumulator<T extends AircraftStateSetter> {
 
 
     /**
-     * Updates the modifiable state of the aircraft according to the given message
+     * Updates the modifiable state of the aircraft according to the given message,
+     * without any receiver position
      *
      * @param message (Message) the received message
      */
-
     public void update(Message message) {
+        update(message, null);
+    }
+
+    /**
+     * Updates the modifiable state of the aircraft according to the given message
+     *
+     * @param message          (Message) the received message
+     * @param receiverPosition (GeoPos) the position of the receiver, or null if it is unknown
+     */
+    public void update(Message message, GeoPos receiverPosition) {
         stateSetter.setLastMessageTimeStampNs(message.timeStampNs());
         switch (message) {
             case AircraftIdentificationMessage aim -> {
@@ -51,11 +87,19 @@ public final class AircraftStateAccumulator<T extends AircraftStateSetter> {
             }
             case AirbornePositionMessage apm -> {
                 stateSetter.setAltitude(apm.altitude());
-                if (apm.parity() == 0) even = apm;
-                else odd = apm;
-                if (even != null && odd != null && Math.abs(even.timeStampNs() - odd.timeStampNs()) < DELTA_TIME_LIMIT) {
-                    GeoPos position = CprDecoder.decodePosition(even.x(), even.y(), odd.x(), odd.y(), apm.parity());
-                    if (position != null) stateSetter.setPosition(position);
+                hasCpr[apm.parity()] = true;
+                cprX[apm.parity()] = apm.x();
+                cprY[apm.parity()] = apm.y();
+                cprTimeStampNs[apm.parity()] = apm.timeStampNs();
+                GeoPos position = null;
+                if (hasCpr[0] && hasCpr[1] && Math.abs(cprTimeStampNs[0] - cprTimeStampNs[1]) < DELTA_TIME_LIMIT) {
+                    position = CprDecoder.decodePosition(cprX[0], cprY[0], cprX[1], cprY[1], apm.parity());
+                }
+                if (position == null) position = decodeLocal(apm, receiverPosition);
+                if (position != null) {
+                    stateSetter.setPosition(position);
+                    lastPosition = position;
+                    lastPositionTimeStampNs = apm.timeStampNs();
                 }
             }
             case AirborneVelocityMessage avm -> {
@@ -66,4 +110,71 @@ public final class AircraftStateAccumulator<T extends AircraftStateSetter> {
         }
     }
 
+    /**
+     * Writes the last halves of the position and the last position of the aircraft, but not its state
+     *
+     * @param out (DataOutput)
+     * @throws IOException in case of input/output error
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        for (int parity = 0; parity < 2; ++parity) {
+            out.writeBoolean(hasCpr[parity]);
+            if (!hasCpr[parity]) continue;
+            out.writeDouble(cprX[parity]);
+            out.writeDouble(cprY[parity]);
+            out.writeLong(cprTimeStampNs[parity]);
+        }
+        out.writeBoolean(lastPosition != null);
+        if (lastPosition == null) return;
+        out.writeInt(lastPosition.longitudeT32());
+        out.writeInt(lastPosition.latitudeT32());
+        out.writeLong(lastPositionTimeStampNs);
+    }
+
+    /**
+     * Reads the last halves of the position and the last position of the aircraft, as written by writeTo
+     *
+     * @param in          (DataInput)
+     * @param timeShiftNs (long) shift added to the time stamps read
+     * @throws IOException in case of input/output error, or if the longitude or latitude read are invalid
+     */
+    public void readFrom(DataInput in, long timeShiftNs) throws IOException {
+        for (int parity = 0; parity < 2; ++parity) {
+            hasCpr[parity] = in.readBoolean();
+            if (!hasCpr[parity]) continue;
+            cprX[parity] = in.readDouble();
+            cprY[parity] = in.readDouble();
+            cprTimeStampNs[parity] = in.readLong() + timeShiftNs;
+        }
+        lastPosition = in.readBoolean() ? readPosition(in) : null;
+        if (lastPosition != null) lastPositionTimeStampNs = in.readLong() + timeShiftNs;
+    }
+
+    /**
+     * @param in (DataInput)
+     * @return (GeoPos) the position written as its longitude and latitude in T32
+     * @throws IOException in case of input/output error, or if the latitude read is invalid
+     */
+    static GeoPos readPosition(DataInput in) throws IOException {
+        int longitudeT32 = in.readInt(), latitudeT32 = in.readInt();
+        if (!GeoPos.isValidLatitudeT32(latitudeT32)) throw new IOException("invalid latitude");
+        return new GeoPos(longitudeT32, latitudeT32);
+    }
+
+    /**
+     * @param message          (AirbornePositionMessage)
+     * @param receiverPosition (GeoPos) the position of the receiver, or null if it is unknown
+     * @return (GeoPos) the position decoded from the given message alone, or null if there is no trusted
+     * reference, if the position cannot be determined, or if it was decoded from the receiver position and is
+     * more than 100 NM from it
+     */
+    private GeoPos decodeLocal(AirbornePositionMessage message, GeoPos receiverPosition) {
+        if (lastPosition != null && message.timeStampNs() - lastPositionTimeStampNs < DELTA_TIME_LIMIT) {
+            return CprDecoder.decodeLocal(message.x(), message.y(), message.parity(), lastPosition);
+        }
+        if (receiverPosition == null) return null;
+        GeoPos position = CprDecoder.decodeLocal(message.x(), message.y(), message.parity(), receiverPosition);
+        return position != null && position.distanceTo(receiverPosition) <= RECEIVER_RANGE ? position : null;
+    }
+
 }
@@ -0,0 +1,350 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.aircraft.IcaoAddress;
+import ch.epfl.javions.aircraft.IcaoAddressMap;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * This class represents the states of the aircraft having sent messages recently, each of them being updated by
+ * an accumulator
+ * <p>
+ * The aircraft are kept in the order of their last message, so that the ones whose last message dates more than
+ * the timeout from the current message time are purged from the head of the list, without visiting the others.
+ * A table is not thread-safe: it must only be accessed by one thread at a time.
+ * <p>
+ * A table can be saved to a file and restored from it, so that the aircraft survive a restart. The time stamps of
+ * the messages only make sense within a run, so that the restored time stamps are rebased: an aircraft whose last
+ * message was received a given time before the table was saved is restored as if it had been received the same
+ * time plus the time elapsed since the save before the last message of the new table, negative if none has been
+ * received yet. The aircraft which would have been purged by then are not restored.
+ *
+ * @param <T> the type of the states
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class AircraftStateTable<T extends AircraftStateSetter> {
+    private static final int FILE_MAGIC = 0x4A56_5354, FILE_VERSION = 1;
+    private static final long NANOSECONDS_PER_MILLISECOND = 1_000_000;
+    private final long timeoutNs;
+    private final Function<IcaoAddress, T> stateFactory;
+    private final IcaoAddressMap<Entry<T>> entries;
+    private Entry<T> leastRecent, mostRecent;
+    private long lastTimeStampNs;
+
+    /**
+     * An aircraft of the table, linked to the aircraft whose last messages arrived just before and just after its own
+     */
+    private static final class Entry<T extends AircraftStateSetter> {
+        private final IcaoAddress address;
+        private final AircraftStateAccumulator<T> accumulator;
+        private long lastTimeStampNs;
+        private Entry<T> previous, next;
+
+        private Entry(IcaoAddress address, AircraftStateAccumulator<T> accumulator) {
+            this.address = address;
+            this.accumulator = accumulator;
+        }
+    }
+
+    /**
+     * This interface represents the way the states of a table are written
+     *
+     * @param <T> the type of the states
+     */
+    @FunctionalInterface
+    public interface StateWriter<T> {
+        /**
+         * @param state (T) state to write, without its address
+         * @param out   (DataOutput)
+         * @throws IOException in case of input/output error
+         */
+        void write(T state, DataOutput out) throws IOException;
+    }
+
+    /**
+     * This interface represents the way the states of a table are read, as written by the corresponding StateWriter
+     *
+     * @param <T> the type of the states
+     */
+    @FunctionalInterface
+    public interface StateReader<T> {
+        /**
+         * @param address     (IcaoAddress) address of the aircraft
+         * @param in          (DataInput)
+         * @param timeShiftNs (long) shift to add to the time stamps read
+         * @return (T) the state read
+         * @throws IOException in case of input/output error, or if the state read is invalid
+         */
+        T read(IcaoAddress address, DataInput in, long timeShiftNs) throws IOException;
+    }
+
+    /**
+     * public AircraftStateTable constructor
+     * Returns an empty table
+     *
+     * @param timeoutNs    (long) The time in nanoseconds after its last message from which an aircraft is purged
+     * @param stateFactory (Function<IcaoAddress, T>) creates the state of an aircraft appearing in the table
+     * @throws IllegalArgumentException if the timeout is negative
+     * @throws NullPointerException     if stateFactory is null
+     */
+    public AircraftStateTable(long timeoutNs, Function<IcaoAddress, T> stateFactory) {
+        Preconditions.checkArgument(timeoutNs >= 0);
+        this.timeoutNs = timeoutNs;
+        this.stateFactory = Objects.requireNonNull(stateFactory);
+        entries = new IcaoAddressMap<>();
+    }
+
+    /**
+     * @return (int) the number of aircraft of the table
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param address (IcaoAddress)
+     * @return (T) the state of the aircraft with the given address, or null if it is not in the table
+     */
+    public T get(IcaoAddress address) {
+        Entry<T> entry = entries.get(address.asInt());
+        return entry == null ? null : entry.accumulator.stateSetter();
+    }
+
+    /**
+     * Updates the state of the sender of the given message, creating it if needed,
+     * without any receiver position
+     *
+     * @param message (Message)
+     * @return (T) the state of the sender of the message
+     */
+    public T update(Message message) {
+        return update(message, null);
+    }
+
+    /**
+     * Updates the state of the sender of the given message, creating it if needed
+     *
+     * @param message          (Message)
+     * @param receiverPosition (GeoPos) the position of the receiver, or null if it is unknown
+     * @return (T) the state of the sender of the message
+     */
+    public T update(Message message, GeoPos receiverPosition) {
+        lastTimeStampNs = message.timeStampNs();
+        IcaoAddress address = message.icaoAddress();
+        Entry<T> entry = entries.get(address.asInt());
+        if (entry == null) {
+            entry = new Entry<>(address, new AircraftStateAccumulator<>(stateFactory.apply(address)));
+            entries.put(address.asInt(), entry);
+        } else unlink(entry);
+        append(entry);
+        entry.lastTimeStampNs = lastTimeStampNs;
+        entry.accumulator.update(message, receiverPosition);
+        return entry.accumulator.stateSetter();
+    }
+
+    /**
+     * Removes any aircraft whose last message dates more than the timeout from the current message time
+     *
+     * @return (int) the number of aircraft removed
+     */
+    public int purge() {
+        return purge(state -> {});
+    }
+
+    /**
+     * Same as the previous method, applying the given action to the state of every aircraft removed
+     *
+     * @param action (Consumer<? super T>) action, which must not update the table
+     * @return (int) the number of aircraft removed
+     */
+    public int purge(Consumer<? super T> action) {
+        int removed = 0;
+        while (leastRecent != null && lastTimeStampNs - leastRecent.lastTimeStampNs > timeoutNs) {
+            Entry<T> entry = leastRecent;
+            unlink(entry);
+            entries.remove(entry.address.asInt());
+            action.accept(entry.accumulator.stateSetter());
+            ++removed;
+        }
+        return removed;
+    }
+
+    /**
+     * Applies the given action to the state of every aircraft, from the one whose last message is the oldest
+     * to the one whose last message is the most recent
+     *
+     * @param action (Consumer<? super T>) action, which must not update the table
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (Entry<T> entry = leastRecent; entry != null; entry = entry.next) {
+            action.accept(entry.accumulator.stateSetter());
+        }
+    }
+
+    /**
+     * Saves the table to the given file. The table is first written to a temporary file next to it, which then
+     * atomically replaces it, so that the file is never left partially written
+     *
+     * @param file   (Path)
+     * @param writer (StateWriter<? super T>) writes the states
+     * @throws IOException in case of input/output error, or if the file system cannot move files atomically
+     */
+    public void save(Path file, StateWriter<? super T> writer) throws IOException {
+        writeImage(file, image(writer));
+    }
+
+    /**
+     * Returns the content of the file written by save, so that the table can be written to the file later, by
+     * another thread, while it keeps being updated
+     *
+     * @param writer (StateWriter<? super T>) writes the states
+     * @return (byte[]) the content of the file, to be written by writeImage
+     * @throws IOException if the writer fails
+     */
+    public byte[] image(StateWriter<? super T> writer) throws IOException {
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(image);
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeLong(System.currentTimeMillis());
+        writeTo(out, writer);
+        return image.toByteArray();
+    }
+
+    /**
+     * Writes the given image of a table to the given file. The image is first written to a temporary file next to
+     * it, which then atomically replaces it, so that the file is never left partially written. Can be called from
+     * any thread, but not by two threads at once for the same file
+     *
+     * @param file  (Path)
+     * @param image (byte[]) image returned by image
+     * @throws IOException in case of input/output error, or if the file system cannot move files atomically
+     */
+    public static void writeImage(Path file, byte[] image) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporaryFile, image);
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores the aircraft saved to the given file, which were not purged since
+     *
+     * @param file   (Path) file written by save
+     * @param reader (StateReader<? extends T>) reads the states written by the writer given to save
+     * @return (int) the number of aircraft restored
+     * @throws IOException           in case of input/output error, or if the file is invalid, in which case the
+     *                               table is left empty
+     * @throws IllegalStateException if the table is not empty
+     */
+    public int restore(Path file, StateReader<? extends T> reader) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) throw new IOException("unknown format");
+            long elapsedNs = Math.max(0, System.currentTimeMillis() - in.readLong()) * NANOSECONDS_PER_MILLISECOND;
+            return readFrom(in, elapsedNs, reader);
+        }
+    }
+
+    /**
+     * Writes the aircraft of the table, from the one whose last message is the oldest to the one whose last
+     * message is the most recent
+     *
+     * @param out    (DataOutput)
+     * @param writer (StateWriter<? super T>) writes the states
+     * @throws IOException in case of input/output error
+     */
+    public void writeTo(DataOutput out, StateWriter<? super T> writer) throws IOException {
+        out.writeLong(lastTimeStampNs);
+        out.writeInt(size());
+        for (Entry<T> entry = leastRecent; entry != null; entry = entry.next) {
+            out.writeInt(entry.address.asInt());
+            out.writeLong(entry.lastTimeStampNs);
+            writer.write(entry.accumulator.stateSetter(), out);
+            entry.accumulator.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads the aircraft written by writeTo into this empty table, skipping the ones whose last message, once
+     * rebased, dates more than the timeout from the current message time
+     *
+     * @param in        (DataInput)
+     * @param elapsedNs (long) time in nanoseconds elapsed since the aircraft were written
+     * @param reader    (StateReader<? extends T>) reads the states written by the writer given to writeTo
+     * @return (int) the number of aircraft restored
+     * @throws IOException           in case of input/output error, or if the aircraft read are invalid, in which
+     *                               case the table is left empty
+     * @throws IllegalStateException if the table is not empty
+     */
+    public int readFrom(DataInput in, long elapsedNs, StateReader<? extends T> reader) throws IOException {
+        if (size() != 0) throw new IllegalStateException();
+        long timeShiftNs = lastTimeStampNs - in.readLong() - elapsedNs;
+        int count = in.readInt();
+        if (count < 0) throw new IOException("invalid aircraft count");
+        try {
+            for (int i = 0; i < count; ++i) {
+                int addressValue = in.readInt();
+                if (addressValue >>> IcaoAddress.SIZE != 0 || entries.containsKey(addressValue)) {
+                    throw new IOException("invalid address");
+                }
+                IcaoAddress address = IcaoAddress.of(addressValue);
+                long entryTimeStampNs = in.readLong() + timeShiftNs;
+                Entry<T> entry = new Entry<>(address,
+                        new AircraftStateAccumulator<>(reader.read(address, in, timeShiftNs)));
+                entry.accumulator.readFrom(in, timeShiftNs);
+                if (lastTimeStampNs - entryTimeStampNs > timeoutNs) continue;
+                entry.lastTimeStampNs = entryTimeStampNs;
+                entries.put(addressValue, entry);
+                append(entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the table is left empty rather than partially restored
+            entries.clear();
+            leastRecent = null;
+            mostRecent = null;
+            throw e;
+        }
+        return size();
+    }
+
+    /**
+     * Adds the given entry after the most recent one
+     *
+     * @param entry (Entry<T>) entry which is not linked
+     */
+    private void append(Entry<T> entry) {
+        entry.previous = mostRecent;
+        entry.next = null;
+        if (mostRecent == null) leastRecent = entry;
+        else mostRecent.next = entry;
+        mostRecent = entry;
+    }
+
+    /**
+     * Removes the given entry from the list of entries
+     *
+     * @param entry (Entry<T>) linked entry
+     */
+    private void unlink(Entry<T> entry) {
+        if (entry.previous == null) leastRecent = entry.next;
+        else entry.previous.next = entry.next;
+        if (entry.next == null) mostRecent = entry.previous;
+        else entry.next.previous = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+    }
+}
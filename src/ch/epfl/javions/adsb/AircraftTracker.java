@@ -0,0 +1,215 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.aircraft.AircraftData;
+import ch.epfl.javions.aircraft.AircraftDatabase;
+import ch.epfl.javions.aircraft.IcaoAddress;
+import ch.epfl.javions.aircraft.SpatialIndex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * This class represents a manager of the states of the aircraft which does not depend on JavaFX, so that it can
+ * run on a headless server
+ * <p>
+ * The state of an aircraft is created with its first message, enriched with its data from the aircraft database,
+ * and purged once its last message dates more than a given timeout (a minute by default) from the time of the
+ * current message, whether it is positioned or not. Only the aircraft having a position are considered as
+ * tracked. A tracker is not thread-safe: it must only be accessed by one thread at a time.
+ * <p>
+ * If the tracker is given a history, every position message received from a positioned aircraft appends a row
+ * to it, so that the aircraft can still be queried once purged.
+ * <p>
+ * The positioned aircraft are indexed by their position, the index being updated with every position message and
+ * purge, so that the aircraft near a point or in an area can be found without visiting all of them.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class AircraftTracker {
+    private static final long MINUTE_IN_NANOSECONDE = 60_000_000_000L;
+    private final AircraftDatabase aircraftDatabase;
+    private final int trajectoryCapacity;
+    private final AircraftStateTable<AircraftState> states;
+    private final AircraftHistory history;
+    private final SpatialIndex<AircraftState> spatialIndex;
+    private GeoPos receiverPosition;
+    private long messageCount;
+
+    /**
+     * public AircraftTracker constructor
+     * Returns a tracker purging the aircraft a minute after their last message
+     *
+     * @param aircraftDatabase (AircraftDatabase) The database to retrieve aircraft information from
+     */
+    public AircraftTracker(AircraftDatabase aircraftDatabase) {
+        this(aircraftDatabase, MINUTE_IN_NANOSECONDE);
+    }
+
+    /**
+     * Same as the previous constructor, with a given delay after which aircraft are purged
+     *
+     * @param aircraftDatabase (AircraftDatabase) The database to retrieve aircraft information from
+     * @param timeoutNs        (long) The time in nanoseconds after its last message from which an aircraft is purged
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public AircraftTracker(AircraftDatabase aircraftDatabase, long timeoutNs) {
+        this(aircraftDatabase, timeoutNs, Trajectory.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Same as the previous constructor, with a given maximum number of points of the trajectories
+     *
+     * @param aircraftDatabase   (AircraftDatabase) The database to retrieve aircraft information from
+     * @param timeoutNs          (long) The time in nanoseconds after its last message from which an aircraft is
+     *                           purged
+     * @param trajectoryCapacity (int) The maximum number of points of the trajectory of an aircraft
+     * @throws IllegalArgumentException if the timeout is negative or if the capacity is smaller than 2
+     */
+    public AircraftTracker(AircraftDatabase aircraftDatabase, long timeoutNs, int trajectoryCapacity) {
+        this(aircraftDatabase, timeoutNs, trajectoryCapacity, null);
+    }
+
+    /**
+     * Same as the previous constructor, with a history the updates of the positioned aircraft are appended to
+     *
+     * @param aircraftDatabase   (AircraftDatabase) The database to retrieve aircraft information from
+     * @param timeoutNs          (long) The time in nanoseconds after its last message from which an aircraft is
+     *                           purged
+     * @param trajectoryCapacity (int) The maximum number of points of the trajectory of an aircraft
+     * @param history            (AircraftHistory) The history of the updates, or null if they are not kept
+     * @throws IllegalArgumentException if the timeout is negative or if the capacity is smaller than 2
+     */
+    public AircraftTracker(AircraftDatabase aircraftDatabase, long timeoutNs, int trajectoryCapacity,
+                           AircraftHistory history) {
+        Preconditions.checkArgument(trajectoryCapacity >= 2);
+        this.aircraftDatabase = Objects.requireNonNull(aircraftDatabase);
+        this.trajectoryCapacity = trajectoryCapacity;
+        this.history = history;
+        spatialIndex = new SpatialIndex<>();
+        states = new AircraftStateTable<>(timeoutNs,
+                address -> new AircraftState(address, aircraftData(address), this.trajectoryCapacity));
+    }
+
+    /**
+     * Sets the position of the receiver, which allows the position of an aircraft to be decoded from its first
+     * position message, as long as it is within the range of the receiver
+     *
+     * @param receiverPosition (GeoPos) the position of the receiver, or null if it is unknown
+     */
+    public void setReceiverPosition(GeoPos receiverPosition) {
+        this.receiverPosition = receiverPosition;
+    }
+
+    /**
+     * Updates the state of the sender of the given message, creating it if needed, appends it to the history if
+     * needed, then purges the aircraft whose last message dates more than the timeout from the time of the message
+     *
+     * @param message (Message)
+     * @return (AircraftState) the state of the sender of the message
+     */
+    public AircraftState updateWithMessage(Message message) {
+        ++messageCount;
+        AircraftState state = states.update(message, receiverPosition);
+        if (message instanceof AirbornePositionMessage && state.getPosition() != null) {
+            spatialIndex.put(state.address(), state.getPosition(), state);
+            if (history != null) history.append(message.timeStampNs(), state);
+        }
+        states.purge(purged -> spatialIndex.remove(purged.address()));
+        return state;
+    }
+
+    /**
+     * @param address (IcaoAddress)
+     * @return (AircraftState) the state of the aircraft with the given address, positioned or not, or null if it
+     * has not sent any message recently
+     */
+    public AircraftState get(IcaoAddress address) {
+        return states.get(address);
+    }
+
+    /**
+     * @return (List<AircraftState>) the states of the aircraft having a position, from the one whose last message
+     * is the oldest to the one whose last message is the most recent
+     */
+    public List<AircraftState> states() {
+        List<AircraftState> positioned = new ArrayList<>(states.size());
+        states.forEach(state -> {
+            if (state.getPosition() != null) positioned.add(state);
+        });
+        return positioned;
+    }
+
+    /**
+     * Applies the given action to the state of every aircraft having a position, from the one whose last message
+     * is the oldest to the one whose last message is the most recent, without copying them
+     *
+     * @param action (Consumer<? super AircraftState>) action, which must not update the tracker
+     */
+    public void forEach(Consumer<? super AircraftState> action) {
+        states.forEach(state -> {
+            if (state.getPosition() != null) action.accept(state);
+        });
+    }
+
+    /**
+     * @return (SpatialIndex<AircraftState>) the index of the aircraft having a position by their position,
+     * which must not be modified
+     */
+    public SpatialIndex<AircraftState> spatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * @return (long) the number of messages received by the tracker
+     */
+    public long messageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Saves the aircraft of the tracker, positioned or not, to the given file, which is atomically replaced
+     *
+     * @param file (Path)
+     * @throws IOException in case of input/output error
+     */
+    public void save(Path file) throws IOException {
+        states.save(file, AircraftState::writeTo);
+    }
+
+    /**
+     * Restores the aircraft saved to the given file which would not have been purged since, without looking
+     * them up in the aircraft database again. Must be called before the first message
+     *
+     * @param file (Path) file written by save
+     * @return (int) the number of aircraft restored
+     * @throws IOException           in case of input/output error, or if the file is invalid, in which case the
+     *                               tracker is left empty
+     * @throws IllegalStateException if the tracker already has aircraft
+     */
+    public int restore(Path file) throws IOException {
+        int restored = states.restore(file,
+                (address, in, timeShiftNs) -> AircraftState.readFrom(address, in, timeShiftNs, trajectoryCapacity));
+        forEach(state -> spatialIndex.put(state.address(), state.getPosition(), state));
+        return restored;
+    }
+
+    /**
+     * @param icaoAddress (IcaoAddress)
+     * @return (AircraftData) the data of the aircraft with the given address, or null if it is unknown
+     * or if the database could not be read
+     */
+    private AircraftData aircraftData(IcaoAddress icaoAddress) {
+        try {
+            return aircraftDatabase.get(icaoAddress);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
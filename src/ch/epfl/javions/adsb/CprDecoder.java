@@ -10,11 +10,22 @@ import ch.epfl.javions.GeoPos;
 import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.Units;
 
+import java.util.Arrays;
+
 public class CprDecoder {
     private static final double ANGLES_IN_TURN_UPPER_BOUND = 0.5;
     private static final int OFFSET_RECENTER_AROUND_ZERO = 1;
     private final static int Z_PHI_0 = 60, Z_PHI_1 = 59;
     private final static double DELTA_PHI_0 = 1. / Z_PHI_0, DELTA_PHI_1 = 1. / Z_PHI_1;
+    /**
+     * number of longitude zones at the equator, the maximum
+     */
+    private static final int MAX_ZONES = zonesFromFormula(0);
+    /**
+     * in increasing order, the largest absolute latitudes, in turns, having at least MAX_ZONES,
+     * MAX_ZONES - 1, ..., 2 longitude zones according to the formula
+     */
+    private static final double[] ZONE_THRESHOLDS = buildZoneThresholds();
 
 
     /**
@@ -78,14 +89,83 @@ public class CprDecoder {
     }
 
     /**
-     * compute value of ZLambda0 given the angle
+     * Decodes a single message using a reference position, which must be less than half a latitude zone
+     * (about 333 km) away from the actual position of the aircraft: the zones containing the aircraft are the
+     * ones whose center is the closest to the reference.
+     *
+     * @param x         (double) local longitude of the message
+     * @param y         (double) local latitude of the message
+     * @param parity    (int) parity of the message
+     * @param reference (GeoPos) reference position
+     * @return the geographic position corresponding to the given normalized local position,
+     * or null if the latitude of the decoded position is invalid
+     * @throws IllegalArgumentException if parity is not 0 or 1
+     */
+    public static GeoPos decodeLocal(double x, double y, int parity, GeoPos reference) {
+        Preconditions.checkArgument(parity == 0 || parity == 1);
+        double deltaPhi = parity == 0 ? DELTA_PHI_0 : DELTA_PHI_1;
+        double referencePhi = Units.convert(reference.latitudeT32(), Units.Angle.T32, Units.Angle.TURN);
+        double phiInTurn = deltaPhi * (Math.floor(referencePhi / deltaPhi - y + ANGLES_IN_TURN_UPPER_BOUND) + y);
+
+        int zLambda = Math.max(ZLambda0Compute(phiInTurn) - parity, 1);
+        double deltaLambda = 1. / zLambda;
+        double referenceLambda = Units.convert(reference.longitudeT32(), Units.Angle.T32, Units.Angle.TURN);
+        double lambdaInTurn = deltaLambda
+                * (Math.floor(referenceLambda / deltaLambda - x + ANGLES_IN_TURN_UPPER_BOUND) + x);
+        if (lambdaInTurn >= ANGLES_IN_TURN_UPPER_BOUND) lambdaInTurn -= OFFSET_RECENTER_AROUND_ZERO;
+        else if (lambdaInTurn < -ANGLES_IN_TURN_UPPER_BOUND) lambdaInTurn += OFFSET_RECENTER_AROUND_ZERO;
+
+        // the longitude is wrapped around, a rounded half turn becoming the opposite half turn
+        int longitudeT32 = (int) (long) Math.rint(Units.convert(lambdaInTurn, Units.Angle.TURN, Units.Angle.T32));
+        int latitudeT32 = (int) Math.rint(Units.convert(phiInTurn, Units.Angle.TURN, Units.Angle.T32));
+        return GeoPos.isValidLatitudeT32(latitudeT32) ? new GeoPos(longitudeT32, latitudeT32) : null;
+    }
+
+    /**
+     * compute value of ZLambda0 given the angle, by looking up the latitude among the zone thresholds
      *
      * @param phiInTurn (double) angle in TURN
      * @return (int) ZLambda0
      */
     private static int ZLambda0Compute(double phiInTurn) {
+        // the formula only depends on the square of the cosine, which is symmetric around a quarter turn
+        double latitudeInTurn = Math.abs(phiInTurn);
+        if (latitudeInTurn > ANGLES_IN_TURN_UPPER_BOUND / 2) latitudeInTurn = ANGLES_IN_TURN_UPPER_BOUND - latitudeInTurn;
+        int index = Arrays.binarySearch(ZONE_THRESHOLDS, latitudeInTurn);
+        int thresholdsBelow = index >= 0 ? index : -index - 1;
+        return MAX_ZONES - thresholdsBelow;
+    }
+
+    /**
+     * compute value of ZLambda0 given the angle, using its definition
+     *
+     * @param phiInTurn (double) angle in TURN
+     * @return (int) ZLambda0
+     */
+    private static int zonesFromFormula(double phiInTurn) {
         double phi = Units.convertFrom(phiInTurn, Units.Angle.TURN);
         double A = Math.acos(1 - (1 - Math.cos(2 * Math.PI * DELTA_PHI_0)) / (Math.cos(phi) * Math.cos(phi)));
         return (Double.isNaN(A)) ? 1 : (int) Math.floor(2 * Math.PI / A);
     }
+
+    /**
+     * Builds the zone thresholds by bisecting the formula, so that the lookup gives exactly the same number of
+     * zones as the formula for any latitude
+     *
+     * @return (double[]) the zone thresholds
+     */
+    private static double[] buildZoneThresholds() {
+        double[] thresholds = new double[MAX_ZONES - 1];
+        for (int zones = MAX_ZONES; zones >= 2; --zones) {
+            // the bits of positive doubles are ordered as the doubles themselves
+            long low = 0, high = Double.doubleToLongBits(ANGLES_IN_TURN_UPPER_BOUND / 2);
+            while (low < high) {
+                long middle = (low + high + 1) >>> 1;
+                if (zonesFromFormula(Double.longBitsToDouble(middle)) >= zones) low = middle;
+                else high = middle - 1;
+            }
+            thresholds[MAX_ZONES - zones] = Double.longBitsToDouble(low);
+        }
+        return thresholds;
+    }
 }
@@ -0,0 +1,121 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * This class represents a filter dropping the raw ADS-B messages identical to a message accepted
+ * shortly before, as received several times when several receivers or overlapping recordings feed
+ * the same pipeline
+ * <p>
+ * The accepted messages are remembered in a fixed-size open-addressing hash table keyed by their
+ * content, whose entries expire once they are older than the time window of the filter. The table
+ * never allocates after its construction: when all the slots probed for a message are still alive,
+ * the oldest one is overwritten. Only the first arrival of a message is accepted, so that its time
+ * stamp is the one kept by the rest of the pipeline.
+ * <p>
+ * A filter must be used by a single thread, but its counters can be read from any thread.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class DuplicateFrameFilter implements Predicate<RawMessage> {
+    private static final int MAX_PROBES = 8;
+    private static final int HIGH_BYTES_START = 0, LOW_BYTES_START = Long.BYTES, LOW_BYTES_FINISH = RawMessage.LENGTH;
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long HIGH_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L, LOW_HASH_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+    private final long windowNs;
+    private final int mask;
+    private final long[] highBytes, lowBytes, timeStampsNs;
+    private final LongAdder unique, duplicates;
+
+    /**
+     * public DuplicateFrameFilter constructor
+     *
+     * @param capacity (int) number of slots of the table, which must be a power of two
+     * @param windowNs (long) duration in nanoseconds during which a message is remembered
+     * @throws IllegalArgumentException if the capacity is not a power of two or if the window is negative
+     */
+    public DuplicateFrameFilter(int capacity, long windowNs) {
+        Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1 && windowNs >= 0);
+        this.windowNs = windowNs;
+        mask = capacity - 1;
+        highBytes = new long[capacity];
+        lowBytes = new long[capacity];
+        timeStampsNs = new long[capacity];
+        Arrays.fill(timeStampsNs, EMPTY);
+        unique = new LongAdder();
+        duplicates = new LongAdder();
+    }
+
+    /**
+     * @param rawMessage (RawMessage)
+     * @return (boolean) true iff no identical message has been accepted during the time window
+     * preceding (or following) the time stamp of the given one
+     */
+    @Override
+    public boolean test(RawMessage rawMessage) {
+        long timeStampNs = rawMessage.timeStampNs();
+        long high = rawMessage.bytes().longAt(HIGH_BYTES_START);
+        long low = rawMessage.bytes().bytesInRange(LOW_BYTES_START, LOW_BYTES_FINISH);
+        int hash = hash(high, low);
+
+        int free = -1, oldest = hash & mask;
+        for (int probe = 0; probe < MAX_PROBES; ++probe) {
+            int i = (hash + probe) & mask;
+            long slotTimeStampNs = timeStampsNs[i];
+            if (slotTimeStampNs == EMPTY || Math.abs(timeStampNs - slotTimeStampNs) > windowNs) {
+                if (free < 0) free = i;
+            } else if (highBytes[i] == high && lowBytes[i] == low) {
+                duplicates.increment();
+                return false;
+            } else if (slotTimeStampNs < timeStampsNs[oldest]) oldest = i;
+        }
+
+        int slot = free >= 0 ? free : oldest;
+        highBytes[slot] = high;
+        lowBytes[slot] = low;
+        timeStampsNs[slot] = timeStampNs;
+        unique.increment();
+        return true;
+    }
+
+    /**
+     * @param high (long) first eight bytes of a message
+     * @param low  (long) remaining bytes of a message
+     * @return (int) the hash of the message's content
+     */
+    private static int hash(long high, long low) {
+        long h = high * HIGH_HASH_MULTIPLIER ^ low * LOW_HASH_MULTIPLIER;
+        return (int) (h ^ (h >>> Integer.SIZE));
+    }
+
+    /**
+     * @return (long) the number of messages accepted so far
+     */
+    public long uniqueCount() {
+        return unique.sum();
+    }
+
+    /**
+     * @return (long) the number of duplicates dropped so far
+     */
+    public long duplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return (Map<String, Long>) the counters of the filter, by name
+     */
+    public Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("deduplication.unique", uniqueCount());
+        counters.put("deduplication.duplicates", duplicateCount());
+        return counters;
+    }
+}
@@ -0,0 +1,246 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * This class represents a batch of parsed ADS-B messages stored column by column
+ * <p>
+ * Each column is a primitive array indexed by the row of the message in the batch. The fields that
+ * do not exist for the kind of a message are NaN (or 0 for integer columns), and a validity bitmap
+ * tells which rows would have been parsed into a message by MessageParser.parse. A batch can be
+ * refilled as many times as needed, which makes it suited to replays, archive scans and bulk
+ * state rebuilds.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class MessageBatch {
+    private static final int ROW_INDEX_BITS = 6;
+    private final long[] timeStampNs;
+    private final int[] icaoAddress;
+    private final int[] typeCode;
+    private final double[] altitude, x, y, speed, trackOrHeading;
+    private final int[] parity, category;
+    private final long[] encodedCallSign;
+    private final long[] validity;
+    private int size;
+
+    /**
+     * public MessageBatch constructor
+     *
+     * @param capacity (int) maximum number of messages the batch can hold
+     * @throws IllegalArgumentException if the capacity is not strictly positive
+     */
+    public MessageBatch(int capacity) {
+        Preconditions.checkArgument(capacity > 0);
+        timeStampNs = new long[capacity];
+        icaoAddress = new int[capacity];
+        typeCode = new int[capacity];
+        altitude = new double[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        speed = new double[capacity];
+        trackOrHeading = new double[capacity];
+        parity = new int[capacity];
+        category = new int[capacity];
+        encodedCallSign = new long[capacity];
+        validity = new long[(capacity + Long.SIZE - 1) >> ROW_INDEX_BITS];
+    }
+
+    /**
+     * Replaces the content of the batch by the given raw messages, parsed in one pass
+     *
+     * @param rawMessages (RawMessage[]) array containing the raw messages
+     * @param offset      (int) index of the first raw message to parse
+     * @param count       (int) number of raw messages to parse
+     * @throws IndexOutOfBoundsException if the range defined by offset and count is not included in the array
+     * @throws IllegalArgumentException  if count is greater than the capacity of the batch
+     */
+    void fill(RawMessage[] rawMessages, int offset, int count) {
+        Objects.checkFromIndexSize(offset, count, rawMessages.length);
+        Preconditions.checkArgument(count <= capacity());
+        Arrays.fill(validity, 0L);
+        ParserStatistics statistics = ParserStatistics.ofCurrentThread();
+        for (int i = 0; i < count; ++i) {
+            RawMessage rawMessage = rawMessages[offset + i];
+            long payload = rawMessage.payload();
+            int tc = RawMessage.typeCode(payload);
+            timeStampNs[i] = rawMessage.timeStampNs();
+            icaoAddress[i] = rawMessage.icaoAddressInt();
+            typeCode[i] = tc;
+
+            double alt = Double.NaN, xi = Double.NaN, yi = Double.NaN, v = Double.NaN, t = Double.NaN;
+            int p = 0, c = 0;
+            long cs = 0;
+            boolean valid;
+            MessageView.Kind kind = MessageView.kindOf(tc);
+            if (kind == MessageView.Kind.POSITION) {
+                alt = AirbornePositionMessage.altitude(payload);
+                p = AirbornePositionMessage.parity(payload);
+                xi = AirbornePositionMessage.x(payload);
+                yi = AirbornePositionMessage.y(payload);
+                valid = !Double.isNaN(alt);
+            } else if (kind == MessageView.Kind.VELOCITY) {
+                v = AirborneVelocityMessage.speed(payload);
+                t = AirborneVelocityMessage.trackOrHeading(payload);
+                valid = !Double.isNaN(v);
+            } else if (kind == MessageView.Kind.IDENTIFICATION) {
+                c = AircraftIdentificationMessage.category(payload);
+                cs = AircraftIdentificationMessage.encodedCallSign(payload);
+                valid = AircraftIdentificationMessage.isValidCallSign(payload);
+            } else valid = false;
+
+            altitude[i] = alt;
+            parity[i] = p;
+            x[i] = xi;
+            y[i] = yi;
+            speed[i] = v;
+            trackOrHeading[i] = t;
+            category[i] = c;
+            encodedCallSign[i] = cs;
+            if (valid) validity[i >> ROW_INDEX_BITS] |= 1L << i;
+            statistics.record(tc, icaoAddress[i], timeStampNs[i], valid ? null : ParserStatistics.RejectionReason.of(kind));
+        }
+        size = count;
+    }
+
+    /**
+     * @return (int) the maximum number of messages the batch can hold
+     */
+    public int capacity() {
+        return timeStampNs.length;
+    }
+
+    /**
+     * @return (int) the number of messages currently in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row (int)
+     * @return (boolean) true iff the message at the given row is an identification, positioning or
+     * velocity message whose fields are all valid
+     * @throws IndexOutOfBoundsException if row is not between 0 (included) and the size of the batch (excluded)
+     */
+    public boolean isValid(int row) {
+        Objects.checkIndex(row, size);
+        return (validity[row >> ROW_INDEX_BITS] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return (long[]) a copy of the validity bitmap, where bit i of word i / 64 is set iff the row i is valid
+     */
+    public long[] validity() {
+        return Arrays.copyOf(validity, (size + Long.SIZE - 1) >> ROW_INDEX_BITS);
+    }
+
+    /**
+     * @param row (int)
+     * @return (long) the time stamp in nanoseconds of the message at the given row
+     */
+    public long timeStampNs(int row) {
+        return timeStampNs[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (int) the 24 bits of the ICAO address of the message at the given row
+     */
+    public int icaoAddressInt(int row) {
+        return icaoAddress[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (int) the type code of the message at the given row
+     */
+    public int typeCode(int row) {
+        return typeCode[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (double) the altitude in meters of the message at the given row, or NaN if it is not a valid positioning message
+     */
+    public double altitude(int row) {
+        return altitude[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (int) the parity of the positioning message at the given row, 0 if it is even and 1 if it is odd
+     */
+    public int parity(int row) {
+        return parity[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (double) the local and normalized longitude of the message at the given row, or NaN if it is not a positioning message
+     */
+    public double x(int row) {
+        return x[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (double) the local and normalized latitude of the message at the given row, or NaN if it is not a positioning message
+     */
+    public double y(int row) {
+        return y[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (double) the speed in m/s of the message at the given row, or NaN if it is not a valid velocity message
+     */
+    public double speed(int row) {
+        return speed[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (double) the direction of travel in radians of the message at the given row, or NaN if it is not a valid velocity message
+     */
+    public double trackOrHeading(int row) {
+        return trackOrHeading[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (int) the aircraft category of the identification message at the given row
+     */
+    public int category(int row) {
+        return category[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (long) the 48 bits encoding the call sign of the identification message at the given row
+     */
+    public long encodedCallSign(int row) {
+        return encodedCallSign[Objects.checkIndex(row, size)];
+    }
+
+    /**
+     * @param row (int)
+     * @return (Message) the instance of AircraftIdentificationMessage, AirbornePositionMessage or
+     * AirborneVelocityMessage corresponding to the given row, or null if the row is not valid
+     */
+    public Message toMessage(int row) {
+        if (!isValid(row)) return null;
+        IcaoAddress address = IcaoAddress.of(icaoAddress[row]);
+        return switch (MessageView.kindOf(typeCode[row])) {
+            case POSITION -> new AirbornePositionMessage(timeStampNs[row], address, altitude[row], parity[row], x[row], y[row]);
+            case VELOCITY -> new AirborneVelocityMessage(timeStampNs[row], address, speed[row], trackOrHeading[row]);
+            case IDENTIFICATION -> new AircraftIdentificationMessage(timeStampNs[row], address, category[row],
+                    AircraftIdentificationMessage.callSign(encodedCallSign[row]));
+        };
+    }
+}
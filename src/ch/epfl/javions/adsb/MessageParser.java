@@ -17,24 +17,47 @@ public class MessageParser {
      * @param rawMessage (RawMessage)
      * @return The instance of AircraftIdentificationMessage, AirbornePositionMessage
      * or AirborneVelocityMessage corresponding to the given raw message, or null if the message's
-     * type code does not correspond to any of these three message types, or if it is invalid
+     * type code does not correspond to any of these three message types, or if it is invalid.
+     * The message is counted in the statistics of the current thread (see ParserStatistics)
      */
     public static Message parse(RawMessage rawMessage) {
         int typeCode = rawMessage.typeCode();
+        MessageView.Kind kind = MessageView.kindOf(typeCode);
+        Message message = kind == null ? null : switch (kind) {
+            case VELOCITY -> AirborneVelocityMessage.of(rawMessage);
+            case IDENTIFICATION -> AircraftIdentificationMessage.of(rawMessage);
+            case POSITION -> AirbornePositionMessage.of(rawMessage);
+        };
 
-        switch (typeCode) {
-            case 19 -> {
-                return AirborneVelocityMessage.of(rawMessage);
-            }
-            case 1, 2, 3, 4 -> {
-                return AircraftIdentificationMessage.of(rawMessage);
-            }
-            case 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 20, 21, 22 -> {
-                return AirbornePositionMessage.of(rawMessage);
-            }
-            default -> {
-                return null;
-            }
-        }
+        ParserStatistics.ofCurrentThread().record(typeCode, rawMessage.icaoAddressInt(), rawMessage.timeStampNs(),
+                message == null ? ParserStatistics.RejectionReason.of(kind) : null);
+        return message;
+    }
+
+    /**
+     * Fills the given view with the given raw message, without decoding any of its fields
+     *
+     * @param rawMessage (RawMessage)
+     * @param view       (MessageView) the view to fill, which can be reused from one message to the other
+     * @return (boolean) true iff the message's type code corresponds to an identification, a positioning
+     * or a velocity message, in which case the fields of the message can be read through the view
+     */
+    public static boolean parse(RawMessage rawMessage, MessageView view) {
+        return view.wrap(rawMessage);
+    }
+
+    /**
+     * Parses the given raw messages in one pass, storing their fields column by column in the given batch.
+     * The messages are counted in the statistics of the current thread (see ParserStatistics)
+     *
+     * @param rawMessages (RawMessage[]) array containing the raw messages
+     * @param offset      (int) index of the first raw message to parse
+     * @param count       (int) number of raw messages to parse
+     * @param batch       (MessageBatch) the batch to fill, whose previous content is discarded
+     * @throws IndexOutOfBoundsException if the range defined by offset and count is not included in the array
+     * @throws IllegalArgumentException  if count is greater than the capacity of the batch
+     */
+    public static void parse(RawMessage[] rawMessages, int offset, int count, MessageBatch batch) {
+        batch.fill(rawMessages, offset, count);
     }
 }
@@ -0,0 +1,180 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+/**
+ * This class represents a reusable and modifiable view over a raw ADS-B message
+ * <p>
+ * Only the time stamp, the ICAO address and the payload of the message are extracted
+ * when the view is filled; every other field is decoded on demand, without any allocation,
+ * so that consumers only interested in a few fields of the message (filters, counters,
+ * exporters...) do not pay for the construction of a complete message.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class MessageView {
+    private long timeStampNs;
+    private int icaoAddress;
+    private long payload;
+    private Kind kind;
+
+    /**
+     * The kinds of messages that can be parsed
+     */
+    public enum Kind {
+        IDENTIFICATION, POSITION, VELOCITY
+    }
+
+    /**
+     * @param typeCode (int) type code of a message
+     * @return (Kind) the kind of the messages having the given type code,
+     * or null if they do not correspond to any of the three parsed kinds
+     */
+    static Kind kindOf(int typeCode) {
+        return switch (typeCode) {
+            case 19 -> Kind.VELOCITY;
+            case 1, 2, 3, 4 -> Kind.IDENTIFICATION;
+            case 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 20, 21, 22 -> Kind.POSITION;
+            default -> null;
+        };
+    }
+
+    /**
+     * Makes the view look at the given raw message
+     *
+     * @param rawMessage (RawMessage)
+     * @return (boolean) true iff the type code of the message corresponds to one of the three parsed kinds
+     */
+    boolean wrap(RawMessage rawMessage) {
+        timeStampNs = rawMessage.timeStampNs();
+        icaoAddress = rawMessage.icaoAddressInt();
+        payload = rawMessage.payload();
+        kind = kindOf(RawMessage.typeCode(payload));
+        return kind != null;
+    }
+
+    /**
+     * @return (long) the message's time stamp in nanoseconds
+     */
+    public long timeStampNs() {
+        return timeStampNs;
+    }
+
+    /**
+     * @return (int) the 24 bits of the ICAO address of the message's sender
+     */
+    public int icaoAddressInt() {
+        return icaoAddress;
+    }
+
+    /**
+     * @return (IcaoAddress) the canonical ICAO address of the message's sender
+     */
+    public IcaoAddress icaoAddress() {
+        return IcaoAddress.of(icaoAddress);
+    }
+
+    /**
+     * @return (long) the ME attribute of the message
+     */
+    public long payload() {
+        return payload;
+    }
+
+    /**
+     * @return (int) the type code of the message
+     */
+    public int typeCode() {
+        return RawMessage.typeCode(payload);
+    }
+
+    /**
+     * @return (Kind) the kind of the message, or null if its type code does not correspond to any parsed kind
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return (double) the altitude in meters of a positioning message, or NaN if it is invalid
+     */
+    public double altitude() {
+        return AirbornePositionMessage.altitude(payload);
+    }
+
+    /**
+     * @return (int) the parity of a positioning message, 0 if it is even and 1 if it is odd
+     */
+    public int parity() {
+        return AirbornePositionMessage.parity(payload);
+    }
+
+    /**
+     * @return (double) the local and normalized longitude of a positioning message
+     */
+    public double x() {
+        return AirbornePositionMessage.x(payload);
+    }
+
+    /**
+     * @return (double) the local and normalized latitude of a positioning message
+     */
+    public double y() {
+        return AirbornePositionMessage.y(payload);
+    }
+
+    /**
+     * @return (double) the speed in m/s of a velocity message, or NaN if it cannot be determined
+     */
+    public double speed() {
+        return AirborneVelocityMessage.speed(payload);
+    }
+
+    /**
+     * @return (double) the direction of travel in radians of a velocity message, or NaN if it cannot be determined
+     */
+    public double trackOrHeading() {
+        return AirborneVelocityMessage.trackOrHeading(payload);
+    }
+
+    /**
+     * @return (int) the aircraft category of an identification message
+     */
+    public int category() {
+        return AircraftIdentificationMessage.category(payload);
+    }
+
+    /**
+     * @return (CallSign) the call sign of an identification message, or null if one of its characters is invalid
+     */
+    public CallSign callSign() {
+        return AircraftIdentificationMessage.callSign(payload);
+    }
+
+    /**
+     * @return (Message) the instance of AircraftIdentificationMessage, AirbornePositionMessage or
+     * AirborneVelocityMessage corresponding to the viewed message, or null if its type code does not
+     * correspond to any of these three message types, or if it is invalid
+     */
+    public Message toMessage() {
+        if (kind == null) return null;
+        switch (kind) {
+            case POSITION -> {
+                double altitude = altitude();
+                return Double.isNaN(altitude) ? null
+                        : new AirbornePositionMessage(timeStampNs, icaoAddress(), altitude, parity(), x(), y());
+            }
+            case VELOCITY -> {
+                double speed = speed();
+                return Double.isNaN(speed) ? null
+                        : new AirborneVelocityMessage(timeStampNs, icaoAddress(), speed, trackOrHeading());
+            }
+            default -> {
+                CallSign callSign = callSign();
+                return callSign == null ? null
+                        : new AircraftIdentificationMessage(timeStampNs, icaoAddress(), category(), callSign);
+            }
+        }
+    }
+}
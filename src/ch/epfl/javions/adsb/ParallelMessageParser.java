@@ -0,0 +1,181 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * This class represents a parse stage spreading batches of raw messages over a pool of worker threads
+ * <p>
+ * Each submitted batch receives a sequence number and is parsed by any worker. Parsed batches are stored in
+ * a reorder buffer, from which they are delivered strictly in the order of their sequence numbers, so that
+ * the consumer receives the messages in the order they were submitted, exactly as if they had been parsed
+ * one after the other by MessageParser.parse. The number of batches being parsed or waiting in the reorder
+ * buffer is bounded: submitting a batch blocks while the buffer is full.
+ * <p>
+ * Batches must be submitted by a single thread. The consumer is never called concurrently, but can be
+ * called by any worker thread. An exception thrown by the consumer only loses the message it was given: it is
+ * recorded, and the following messages are still delivered.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class ParallelMessageParser implements AutoCloseable {
+    private static final Message[] NO_MESSAGES = new Message[0];
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+    private final ExecutorService workers;
+    private final Consumer<Message> consumer;
+    private final int capacity;
+    private final Semaphore freeSlots;
+    private final AtomicReferenceArray<Message[]> reorderBuffer;
+    private final ReentrantLock deliveryLock;
+    private long nextSequence;
+    private volatile long nextToDeliver;
+    private volatile long failureCount;
+    private volatile RuntimeException lastFailure;
+
+    /**
+     * public ParallelMessageParser constructor
+     *
+     * @param threads  (int) number of worker threads
+     * @param capacity (int) maximum number of batches being parsed or waiting to be delivered
+     * @param consumer (Consumer<Message>) receives the parsed messages, in the order they were submitted
+     * @throws IllegalArgumentException if threads or capacity is not strictly positive
+     * @throws NullPointerException     if consumer is null
+     */
+    public ParallelMessageParser(int threads, int capacity, Consumer<Message> consumer) {
+        Preconditions.checkArgument(threads > 0 && capacity > 0);
+        this.consumer = Objects.requireNonNull(consumer);
+        this.capacity = capacity;
+        freeSlots = new Semaphore(capacity);
+        reorderBuffer = new AtomicReferenceArray<>(capacity);
+        deliveryLock = new ReentrantLock();
+
+        int pool = POOL_COUNT.incrementAndGet();
+        AtomicInteger workerCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "message-parser-" + pool + "-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a batch of raw messages to parse, waiting for a free slot in the reorder buffer if needed
+     *
+     * @param rawMessages (RawMessage[]) array containing the raw messages, which must not be modified
+     *                    by the caller once submitted
+     * @param count       (int) number of raw messages to parse, from the beginning of the array
+     * @throws IndexOutOfBoundsException if count is negative or greater than the length of the array
+     * @throws InterruptedException      if the current thread is interrupted while waiting
+     */
+    public void submit(RawMessage[] rawMessages, int count) throws InterruptedException {
+        Objects.checkFromIndexSize(0, count, rawMessages.length);
+        if (count == 0) return;
+        freeSlots.acquire();
+        long sequence = nextSequence++;
+        workers.execute(() -> parse(sequence, rawMessages, count));
+    }
+
+    /**
+     * Parses a batch of raw messages, then stores it in the reorder buffer
+     *
+     * @param sequence    (long) sequence number of the batch
+     * @param rawMessages (RawMessage[])
+     * @param count       (int)
+     */
+    private void parse(long sequence, RawMessage[] rawMessages, int count) {
+        Message[] messages = NO_MESSAGES;
+        try {
+            messages = new Message[count];
+            for (int i = 0; i < count; ++i) {
+                messages[i] = MessageParser.parse(rawMessages[i]);
+            }
+        } finally {
+            // a batch which could not be parsed is delivered empty, so that it does not block the following ones
+            reorderBuffer.set(slot(sequence), messages);
+            deliver();
+        }
+    }
+
+    /**
+     * Delivers to the consumer all the batches whose predecessors have already been delivered
+     */
+    private void deliver() {
+        while (deliveryLock.tryLock()) {
+            try {
+                Message[] messages;
+                while ((messages = reorderBuffer.get(slot(nextToDeliver))) != null) {
+                    reorderBuffer.set(slot(nextToDeliver), null);
+                    ++nextToDeliver;
+                    try {
+                        for (Message message : messages) {
+                            if (message != null) accept(message);
+                        }
+                    } finally {
+                        freeSlots.release();
+                    }
+                }
+            } finally {
+                deliveryLock.unlock();
+            }
+            // a batch stored while the lock was held by this thread is delivered by this thread
+            if (reorderBuffer.get(slot(nextToDeliver)) == null) return;
+        }
+    }
+
+    /**
+     * Hands the given message over to the consumer, recording the exception it throws, if any. Must be called
+     * with the delivery lock held
+     *
+     * @param message (Message)
+     */
+    private void accept(Message message) {
+        try {
+            consumer.accept(message);
+        } catch (RuntimeException e) {
+            lastFailure = e;
+            ++failureCount;
+        }
+    }
+
+    /**
+     * @return (long) the number of messages whose delivery failed because the consumer threw an exception.
+     * Can be called from any thread
+     */
+    public long failureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return (RuntimeException) the last exception thrown by the consumer, or null if there was none.
+     * Can be called from any thread
+     */
+    public RuntimeException lastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @param sequence (long)
+     * @return (int) the index in the reorder buffer of the batch with the given sequence number
+     */
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    /**
+     * Waits until all the submitted batches have been delivered, then stops the worker threads
+     */
+    @Override
+    public void close() {
+        freeSlots.acquireUninterruptibly(capacity);
+        workers.shutdown();
+    }
+}
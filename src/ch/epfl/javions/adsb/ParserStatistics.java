@@ -0,0 +1,290 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents the statistics of the messages parsed by one thread
+ * <p>
+ * Every thread parsing messages with MessageParser owns an instance, which it updates without any
+ * synchronization with the other threads: it counts the messages by type code, the messages that
+ * could not be parsed by reason, and the messages received during the last complete second of the
+ * time stamps. The counters of all the threads can be read (and exported) at any time from any thread.
+ * Once a thread has terminated, its counters are added to the retired totals and its statistics are forgotten,
+ * so that short-lived parsing threads do not accumulate.
+ * <p>
+ * Optionally, the number of messages sent by each aircraft is counted as well, to find the top talkers. The
+ * number of aircraft counted is bounded: once it is reached, the half of the aircraft that sent the fewest
+ * messages is forgotten, so that the count is approximate but the one-off addresses of corrupted messages do not
+ * accumulate.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class ParserStatistics {
+    private static final int TYPE_CODES_COUNT = 1 << 5;
+    private static final long NANOSECONDS_PER_SECOND = 1_000_000_000L;
+    private static final int SECOND_SLOTS = 2;
+    private static final long SLOT_COUNT_MASK = (1L << Integer.SIZE) - 1;
+    /**
+     * maximum number of aircraft whose messages are counted
+     */
+    public static final int MAX_TALKERS = 1 << 14;
+    private static final List<ParserStatistics> ALL = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<ParserStatistics> CURRENT = ThreadLocal.withInitial(ParserStatistics::register);
+    private static final AtomicLongArray RETIRED_TYPE_CODES = new AtomicLongArray(TYPE_CODES_COUNT);
+    private static final AtomicLongArray RETIRED_REJECTIONS = new AtomicLongArray(RejectionReason.values().length);
+    private static final Map<Integer, LongAdder> TALKERS = new ConcurrentHashMap<>();
+    private static volatile boolean talkersEnabled = false;
+    private final Thread owner;
+    private final AtomicLongArray typeCodes, rejections;
+    // the number of messages of each of the last seconds, packed with the second in the upper 32 bits
+    private final AtomicLongArray seconds;
+
+    /**
+     * The reasons for which MessageParser.parse can return null
+     */
+    public enum RejectionReason {
+        UNSUPPORTED_TYPE_CODE("unsupportedTypeCode"), INVALID_ALTITUDE("invalidAltitude"),
+        INVALID_CALL_SIGN("invalidCallSign"), UNAVAILABLE_VELOCITY("unavailableVelocity");
+
+        private final String counterName;
+
+        RejectionReason(String counterName) {
+            this.counterName = counterName;
+        }
+
+        /**
+         * @param kind (MessageView.Kind) kind of a message that could not be parsed, or null
+         * @return (RejectionReason) the reason why a message of the given kind could not be parsed
+         */
+        static RejectionReason of(MessageView.Kind kind) {
+            if (kind == null) return UNSUPPORTED_TYPE_CODE;
+            return switch (kind) {
+                case POSITION -> INVALID_ALTITUDE;
+                case IDENTIFICATION -> INVALID_CALL_SIGN;
+                case VELOCITY -> UNAVAILABLE_VELOCITY;
+            };
+        }
+    }
+
+    private ParserStatistics(Thread owner) {
+        this.owner = owner;
+        typeCodes = new AtomicLongArray(TYPE_CODES_COUNT);
+        rejections = new AtomicLongArray(RejectionReason.values().length);
+        seconds = new AtomicLongArray(SECOND_SLOTS);
+    }
+
+    /**
+     * @return (ParserStatistics) new statistics of the current thread, taken into account by the totals
+     */
+    private static ParserStatistics register() {
+        retireTerminated();
+        ParserStatistics statistics = new ParserStatistics(Thread.currentThread());
+        ALL.add(statistics);
+        return statistics;
+    }
+
+    /**
+     * Adds the counters of the threads that terminated to the retired totals, and forgets their statistics.
+     * The termination of a thread happens before the end of its isAlive, so that all its counts are seen
+     */
+    private static synchronized void retireTerminated() {
+        for (ParserStatistics statistics : ALL) {
+            if (statistics.owner.isAlive()) continue;
+            for (int i = 0; i < TYPE_CODES_COUNT; ++i)
+                RETIRED_TYPE_CODES.addAndGet(i, statistics.typeCodes.get(i));
+            for (int i = 0; i < RETIRED_REJECTIONS.length(); ++i)
+                RETIRED_REJECTIONS.addAndGet(i, statistics.rejections.get(i));
+            ALL.remove(statistics);
+        }
+    }
+
+    /**
+     * @return (ParserStatistics) the statistics of the current thread
+     */
+    public static ParserStatistics ofCurrentThread() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Enables or disables the count of the messages sent by each aircraft, which is disabled by default.
+     * Disabling it discards the counts
+     *
+     * @param enabled (boolean)
+     */
+    public static void setTalkersEnabled(boolean enabled) {
+        talkersEnabled = enabled;
+        if (!enabled) TALKERS.clear();
+    }
+
+    /**
+     * Counts a message parsed by the current thread
+     *
+     * @param typeCode    (int) type code of the message
+     * @param icaoAddress (int) the 24 bits of the ICAO address of the message's sender
+     * @param timeStampNs (long) time stamp of the message in nanoseconds
+     * @param reason      (RejectionReason) the reason why the message could not be parsed, or null if it was parsed
+     */
+    void record(int typeCode, int icaoAddress, long timeStampNs, RejectionReason reason) {
+        increment(typeCodes, typeCode);
+        if (reason != null) increment(rejections, reason.ordinal());
+
+        long second = timeStampNs / NANOSECONDS_PER_SECOND;
+        int slot = (int) (second % SECOND_SLOTS);
+        long packed = seconds.getPlain(slot);
+        if (packed >>> Integer.SIZE != second) packed = second << Integer.SIZE;
+        seconds.setRelease(slot, packed + 1);
+
+        if (talkersEnabled) {
+            LongAdder count = TALKERS.get(icaoAddress);
+            if (count == null) {
+                if (TALKERS.size() >= MAX_TALKERS) forgetQuietestTalkers();
+                count = TALKERS.computeIfAbsent(icaoAddress, address -> new LongAdder());
+            }
+            count.increment();
+        }
+    }
+
+    /**
+     * Forgets the half of the aircraft that sent the fewest messages, if the maximum number of talkers is reached.
+     * The messages counted concurrently for the aircraft forgotten are lost
+     */
+    private static synchronized void forgetQuietestTalkers() {
+        if (TALKERS.size() < MAX_TALKERS) return;
+        long[] counts = TALKERS.values().stream().mapToLong(LongAdder::sum).sorted().toArray();
+        long threshold = counts[counts.length / 2];
+        TALKERS.values().removeIf(count -> count.sum() <= threshold);
+    }
+
+    /**
+     * Increments a counter only ever written by the thread owning the statistics
+     *
+     * @param counters (AtomicLongArray)
+     * @param index    (int) index of the counter
+     */
+    private static void increment(AtomicLongArray counters, int index) {
+        counters.setRelease(index, counters.getPlain(index) + 1);
+    }
+
+    /**
+     * @param typeCode (int)
+     * @return (long) the number of messages of the given type code counted so far
+     * @throws IndexOutOfBoundsException if the type code is not between 0 (included) and 32 (excluded)
+     */
+    public long typeCodeCount(int typeCode) {
+        return typeCodes.getAcquire(typeCode);
+    }
+
+    /**
+     * @param reason (RejectionReason)
+     * @return (long) the number of messages that could not be parsed for the given reason
+     */
+    public long rejectionCount(RejectionReason reason) {
+        return rejections.getAcquire(reason.ordinal());
+    }
+
+    /**
+     * @return (long) the number of messages counted so far, parsed or not
+     */
+    public long messageCount() {
+        long count = 0;
+        for (int i = 0; i < typeCodes.length(); ++i) count += typeCodes.getAcquire(i);
+        return count;
+    }
+
+    /**
+     * @return (long) the number of messages successfully parsed so far
+     */
+    public long parsedCount() {
+        long count = messageCount();
+        for (int i = 0; i < rejections.length(); ++i) count -= rejections.getAcquire(i);
+        return count;
+    }
+
+    /**
+     * @return (long) the number of messages counted by this thread whose time stamp was in the second preceding
+     * the one of its last message
+     */
+    public long messagesPerSecond() {
+        return countOfSecond(lastSecond() - 1);
+    }
+
+    /**
+     * @return (long) the second of the time stamp of the last message counted by this thread
+     */
+    private long lastSecond() {
+        long last = 0;
+        for (int i = 0; i < SECOND_SLOTS; ++i) last = Math.max(last, seconds.getAcquire(i) >>> Integer.SIZE);
+        return last;
+    }
+
+    /**
+     * @param second (long)
+     * @return (long) the number of messages counted by this thread whose time stamp was in the given second, or 0
+     * if it is not one of the last seconds
+     */
+    private long countOfSecond(long second) {
+        long packed = seconds.getAcquire(Math.floorMod(second, SECOND_SLOTS));
+        return packed >>> Integer.SIZE == second ? packed & SLOT_COUNT_MASK : 0;
+    }
+
+    /**
+     * @return (Map<String, Long>) the counters of the parser summed over all the threads, including the ones that
+     * terminated, by name. The number of messages per second is the one of the second preceding the one of the
+     * last message counted by any thread
+     */
+    public static synchronized Map<String, Long> counters() {
+        retireTerminated();
+        long[] typeCodes = new long[TYPE_CODES_COUNT];
+        long[] rejections = new long[RejectionReason.values().length];
+        for (int i = 0; i < typeCodes.length; ++i) typeCodes[i] = RETIRED_TYPE_CODES.get(i);
+        for (int i = 0; i < rejections.length; ++i) rejections[i] = RETIRED_REJECTIONS.get(i);
+        long lastSecond = 0;
+        for (ParserStatistics statistics : ALL) {
+            for (int i = 0; i < typeCodes.length; ++i) typeCodes[i] += statistics.typeCodeCount(i);
+            for (RejectionReason reason : RejectionReason.values())
+                rejections[reason.ordinal()] += statistics.rejectionCount(reason);
+            lastSecond = Math.max(lastSecond, statistics.lastSecond());
+        }
+        long parsed = 0, messagesPerSecond = 0;
+        for (long count : typeCodes) parsed += count;
+        for (long count : rejections) parsed -= count;
+        for (ParserStatistics statistics : ALL) messagesPerSecond += statistics.countOfSecond(lastSecond - 1);
+
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("parser.parsed", parsed);
+        counters.put("parser.messagesPerSecond", messagesPerSecond);
+        for (RejectionReason reason : RejectionReason.values())
+            counters.put("parser.rejected." + reason.counterName, rejections[reason.ordinal()]);
+        for (int i = 0; i < typeCodes.length; ++i)
+            if (typeCodes[i] != 0) counters.put("parser.typeCode." + i, typeCodes[i]);
+        return counters;
+    }
+
+    /**
+     * @param n (int) maximum number of aircraft to return
+     * @return (Map<IcaoAddress, Long>) the (at most) n aircraft that sent the most messages since the count
+     * of the talkers has been enabled, with their number of messages, in decreasing order
+     * @throws IllegalArgumentException if n is negative
+     */
+    public static Map<IcaoAddress, Long> topTalkers(int n) {
+        Preconditions.checkArgument(n >= 0);
+        Map<IcaoAddress, Long> talkers = new LinkedHashMap<>();
+        TALKERS.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(n)
+                .forEach(e -> talkers.put(IcaoAddress.of(e.getKey()), e.getValue()));
+        return talkers;
+    }
+}
@@ -1,13 +1,11 @@
 package ch.epfl.javions.adsb;
 
-import ch.epfl.javions.Bits;
+import ch.epfl.javions.BitField;
 import ch.epfl.javions.ByteString;
 import ch.epfl.javions.Crc24;
 import ch.epfl.javions.Preconditions;
 import ch.epfl.javions.aircraft.IcaoAddress;
 
-import java.util.HexFormat;
-
 import static ch.epfl.javions.Crc24.GENERATOR;
 
 /**
@@ -19,12 +17,11 @@ import static ch.epfl.javions.Crc24.GENERATOR;
 public record RawMessage(long timeStampNs, ByteString bytes) {
     public static final int DOWN_LINK_FORMAT_SIZE = 5;
     public static final int LENGTH = 14;
+    private static final int LOW_BYTES_SIZE = LENGTH - Long.BYTES;
     private final static Crc24 CRC_24 = new Crc24(GENERATOR);
-    private static final HexFormat HF = HexFormat.of().withUpperCase();
-    private static final int TYPE_CODE_START = 51, TYPE_CODE_SIZE = 5;
-    private static final int DOWN_LINK_FORMAT_LOCATION_IN_BYTES = 0, DOWN_LINK_FORMAT_START = 3;    private static final int PAYLOAD_IN_BYTES_START = 4, PAYLOAD_IN_BYTES_SIZE = 7,
-            PAYLOAD_IN_BYTES_FINISH_EXCLUDED = PAYLOAD_IN_BYTES_START + PAYLOAD_IN_BYTES_SIZE;
-    private static final int ICAO_ADDRESS_STRING_LENGTH = 10;
+    private static final BitField TYPE_CODE = new BitField(51, 5);
+    private static final BitField DOWN_LINK_FORMAT = new BitField(3, DOWN_LINK_FORMAT_SIZE);
+    private static final int DOWN_LINK_FORMAT_LOCATION_IN_BYTES = 0;    private static final int PAYLOAD_IN_BYTES_START = 4, PAYLOAD_IN_BYTES_SIZE = 7;
     /**
      * @param timeStampNs (long) the time stamp of a message expressed in nanoseconds starting at a given origin
      * @param bytes       (ByteSting) bytes of the message
@@ -32,8 +29,7 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      */
     public RawMessage {
         Preconditions.checkArgument(timeStampNs >= 0 && bytes.size() == LENGTH);
-    }    private static final int ICAO_ADDRESS_LOCATION_IN_BYTES_START = 1, ICAO_ADDRESS_LOCATION_IN_BYTES_SIZE = 3,
-            ICAO_ADDRESS_LOCATION_IN_BYTES_FINISH = ICAO_ADDRESS_LOCATION_IN_BYTES_START + ICAO_ADDRESS_LOCATION_IN_BYTES_SIZE;
+    }    private static final int ICAO_ADDRESS_LOCATION_IN_BYTES_START = 1;
 
     /**
      * @param timeStampNs (long)
@@ -44,12 +40,30 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
         return CRC_24.crc(bytes) == 0 ? new RawMessage(timeStampNs, new ByteString(bytes)) : null;
     }
 
+    /**
+     * @param timeStampNs (long)
+     * @param high        (long) the 8 first bytes of the message, in big-endian order
+     * @param low         (long) the 6 last bytes of the message, in big-endian order in its least significant bytes
+     * @return (RawMessage) the raw ADS-B message with the given timestamp and bytes, or null if the CRC24 of the bytes is not 0
+     */
+    public static RawMessage of(long timeStampNs, long high, long low) {
+        if (CRC_24.crc(high, low, LOW_BYTES_SIZE) != 0) return null;
+        byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < Long.BYTES; ++i) {
+            bytes[i] = (byte) (high >>> ((Long.BYTES - 1 - i) * Byte.SIZE));
+        }
+        for (int i = 0; i < LOW_BYTES_SIZE; ++i) {
+            bytes[Long.BYTES + i] = (byte) (low >>> ((LOW_BYTES_SIZE - 1 - i) * Byte.SIZE));
+        }
+        return new RawMessage(timeStampNs, ByteString.wrap(bytes));
+    }
+
     /**
      * @param byte0 (byte) given byte, first byte of a message
      * @return (int) the size of a message whose first byte is the given one or Length if the message's type is unknown
      */
     public static int size(byte byte0) {
-        return Bits.extractUInt(byte0, DOWN_LINK_FORMAT_START, DOWN_LINK_FORMAT_SIZE) == 17 ? LENGTH : 0;
+        return DOWN_LINK_FORMAT.extract(byte0) == 17 ? LENGTH : 0;
     }
 
     /**
@@ -58,29 +72,35 @@ public record RawMessage(long timeStampNs, ByteString bytes) {
      */
 
     public static int typeCode(long payload) {
-        return Bits.extractUInt(payload, TYPE_CODE_START, TYPE_CODE_SIZE);
+        return TYPE_CODE.extract(payload);
     }
 
     /**
      * @return (int) the message's format
      */
     public int downLinkFormat() {
-        return Bits.extractUInt(bytes.byteAt(DOWN_LINK_FORMAT_LOCATION_IN_BYTES), DOWN_LINK_FORMAT_START,
-                DOWN_LINK_FORMAT_SIZE);
+        return DOWN_LINK_FORMAT.extract(bytes.byteAt(DOWN_LINK_FORMAT_LOCATION_IN_BYTES));
     }
 
     /**
      * @return (IcaoAddress) the ICAO address of the sender of the message
      */
     public IcaoAddress icaoAddress() {
-        return new IcaoAddress(HF.toHexDigits(bytes.bytesInRange(ICAO_ADDRESS_LOCATION_IN_BYTES_START, ICAO_ADDRESS_LOCATION_IN_BYTES_FINISH)).substring(ICAO_ADDRESS_STRING_LENGTH));
+        return IcaoAddress.of(icaoAddressInt());
+    }
+
+    /**
+     * @return (int) the 24 bits of the ICAO address of the sender of the message
+     */
+    public int icaoAddressInt() {
+        return bytes.uInt24At(ICAO_ADDRESS_LOCATION_IN_BYTES_START);
     }
 
     /**
      * @return (long) the ME attribute of the message
      */
     public long payload() {
-        return bytes.bytesInRange(PAYLOAD_IN_BYTES_START, PAYLOAD_IN_BYTES_FINISH_EXCLUDED);
+        return bytes.longAt(PAYLOAD_IN_BYTES_START) >>> ((Long.BYTES - PAYLOAD_IN_BYTES_SIZE) * Byte.SIZE);
     }
 
     /**
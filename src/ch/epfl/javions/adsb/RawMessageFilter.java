@@ -0,0 +1,203 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * This class represents a filter applied to raw ADS-B messages right after their CRC has been
+ * checked, before they are parsed
+ * <p>
+ * A message is accepted iff its downlink format, its ICAO address and its type code are all accepted.
+ * Downlink formats and type codes are accepted through 32-bit masks, and ICAO addresses through a bit
+ * set covering the whole 24-bit address space (all addresses are accepted until a first one is chosen).
+ * The filter can be reconfigured at any time from any thread, and counts the messages each of its
+ * criteria dropped.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class RawMessageFilter implements Predicate<RawMessage> {
+    /**
+     * mask accepting every downlink format or every type code
+     */
+    public static final int ACCEPT_ALL = -1;
+    private static final int WORD_INDEX_BITS = 6;
+    private volatile int downLinkFormatMask, typeCodeMask;
+    private volatile long[] icaoAddresses;
+    private final LongAdder accepted, droppedByDownLinkFormat, droppedByIcaoAddress, droppedByTypeCode;
+
+    /**
+     * public RawMessageFilter default constructor
+     * Returns a filter accepting every message
+     */
+    public RawMessageFilter() {
+        downLinkFormatMask = ACCEPT_ALL;
+        typeCodeMask = ACCEPT_ALL;
+        icaoAddresses = null;
+        accepted = new LongAdder();
+        droppedByDownLinkFormat = new LongAdder();
+        droppedByIcaoAddress = new LongAdder();
+        droppedByTypeCode = new LongAdder();
+    }
+
+    /**
+     * @param values (int...) values between 0 and 31
+     * @return (int) the mask whose bits at the given indexes are set
+     * @throws IllegalArgumentException if one of the values is not between 0 and 31
+     */
+    public static int mask(int... values) {
+        int mask = 0;
+        for (int value : values) {
+            Preconditions.checkArgument(0 <= value && value < Integer.SIZE);
+            mask |= 1 << value;
+        }
+        return mask;
+    }
+
+    /**
+     * Sets the accepted downlink formats
+     *
+     * @param mask (int) mask whose bit i is set iff the messages of downlink format i are accepted
+     */
+    public void setDownLinkFormatMask(int mask) {
+        downLinkFormatMask = mask;
+    }
+
+    /**
+     * Sets the accepted type codes
+     *
+     * @param mask (int) mask whose bit i is set iff the messages of type code i are accepted
+     */
+    public void setTypeCodeMask(int mask) {
+        typeCodeMask = mask;
+    }
+
+    /**
+     * Adds the given range of addresses to the accepted ones. If all the addresses were accepted,
+     * only the ones of the range are accepted afterwards
+     *
+     * @param from (int) first address of the range, as a 24-bit integer
+     * @param to   (int) last address of the range (included), as a 24-bit integer
+     * @throws IllegalArgumentException if the bounds are not 24-bit integers or if from is greater than to
+     */
+    public synchronized void acceptIcaoAddresses(int from, int to) {
+        Preconditions.checkArgument(0 <= from && from <= to && (to >>> IcaoAddress.SIZE) == 0);
+        long[] updated = copyOfIcaoAddresses();
+        for (int address = from; address <= to; ++address) {
+            updated[address >>> WORD_INDEX_BITS] |= 1L << address;
+        }
+        icaoAddresses = updated;
+    }
+
+    /**
+     * Adds the given addresses to the accepted ones, copying the set of accepted addresses once for all of them.
+     * If all the addresses were accepted, only the given ones are accepted afterwards
+     *
+     * @param addresses (Collection<IcaoAddress>)
+     */
+    public synchronized void acceptIcaoAddresses(Collection<IcaoAddress> addresses) {
+        long[] updated = copyOfIcaoAddresses();
+        for (IcaoAddress address : addresses) {
+            updated[address.asInt() >>> WORD_INDEX_BITS] |= 1L << address.asInt();
+        }
+        icaoAddresses = updated;
+    }
+
+    /**
+     * Adds the given address to the accepted ones. If all the addresses were accepted,
+     * only this one is accepted afterwards. To accept several addresses, the method taking a collection
+     * must be preferred, since each call copies the set of accepted addresses
+     *
+     * @param address (IcaoAddress)
+     */
+    public void acceptIcaoAddress(IcaoAddress address) {
+        acceptIcaoAddresses(address.asInt(), address.asInt());
+    }
+
+    /**
+     * Makes the filter accept all the addresses again
+     */
+    public synchronized void acceptAllIcaoAddresses() {
+        icaoAddresses = null;
+    }
+
+    /**
+     * @return (long[]) a copy of the set of accepted addresses, which is empty if all the addresses are accepted
+     */
+    private long[] copyOfIcaoAddresses() {
+        long[] current = icaoAddresses;
+        return current == null ? new long[1 << (IcaoAddress.SIZE - WORD_INDEX_BITS)] : current.clone();
+    }
+
+    /**
+     * @param rawMessage (RawMessage) a message whose CRC has already been checked
+     * @return (boolean) true iff the message is accepted by the filter
+     */
+    @Override
+    public boolean test(RawMessage rawMessage) {
+        if ((downLinkFormatMask & (1 << rawMessage.downLinkFormat())) == 0) {
+            droppedByDownLinkFormat.increment();
+            return false;
+        }
+        long[] addresses = icaoAddresses;
+        if (addresses != null) {
+            int address = rawMessage.icaoAddressInt();
+            if ((addresses[address >>> WORD_INDEX_BITS] & (1L << address)) == 0) {
+                droppedByIcaoAddress.increment();
+                return false;
+            }
+        }
+        if ((typeCodeMask & (1 << rawMessage.typeCode())) == 0) {
+            droppedByTypeCode.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * @return (long) the number of messages accepted so far
+     */
+    public long acceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return (long) the number of messages dropped so far because of their downlink format
+     */
+    public long droppedByDownLinkFormatCount() {
+        return droppedByDownLinkFormat.sum();
+    }
+
+    /**
+     * @return (long) the number of messages dropped so far because of their ICAO address
+     */
+    public long droppedByIcaoAddressCount() {
+        return droppedByIcaoAddress.sum();
+    }
+
+    /**
+     * @return (long) the number of messages dropped so far because of their type code
+     */
+    public long droppedByTypeCodeCount() {
+        return droppedByTypeCode.sum();
+    }
+
+    /**
+     * @return (Map<String, Long>) the counters of the filter, by name
+     */
+    public Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("filter.accepted", acceptedCount());
+        counters.put("filter.dropped.downLinkFormat", droppedByDownLinkFormatCount());
+        counters.put("filter.dropped.icaoAddress", droppedByIcaoAddressCount());
+        counters.put("filter.dropped.typeCode", droppedByTypeCodeCount());
+        return counters;
+    }
+}
@@ -0,0 +1,307 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * This class represents a manager spreading the states of the aircraft over several shards, each of them owned
+ * by its own worker thread
+ * <p>
+ * An aircraft always belongs to the shard designated by the hash of its ICAO address, and the states of a shard
+ * are only ever accessed by its worker, so that they need no lock. The messages are routed to the queue of the
+ * shard of their sender, which receives them in the order they were handed over: the messages of an aircraft are
+ * thus applied in order, while the messages of aircraft belonging to different shards are applied in parallel.
+ * Each worker purges the aircraft of its shard whose last message dates more than the timeout from the time of
+ * the last message of the shard. Routing a message takes no lock: it is only appended to the queue of its shard.
+ * <p>
+ * Readers never access the states directly: they ask for a snapshot, which is built by the workers themselves.
+ * The request is appended to all the queues, so that a snapshot reflects all the messages handed over before it
+ * was requested, in every shard, and none of the ones handed over after it returned. The messages handed over
+ * concurrently with the request may be reflected by some shards only.
+ * <p>
+ * An exception thrown while applying a message only loses that message: it is recorded, and the worker goes on.
+ * If a worker stops anyway, the snapshots it did not fill fail instead of waiting for it forever.
+ *
+ * @param <T> the type of the states
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class ShardedAircraftStateManager<T extends AircraftStateSetter> implements AutoCloseable {
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+    private static final Object STOP = new Object();
+    private static final AtomicInteger MANAGER_COUNT = new AtomicInteger();
+    private final List<Shard> shards;
+    private final LongAdder failureCount;
+    private volatile boolean closed;
+    private volatile RuntimeException lastFailure;
+    private volatile GeoPos receiverPosition;
+
+    /**
+     * A shard, whose states are only accessed by its worker
+     */
+    private final class Shard {
+        private final int index;
+        private final BlockingQueue<Object> queue;
+        private final AircraftStateTable<T> states;
+        private final Thread worker;
+        private volatile long messageCount;
+        private volatile boolean stopped;
+
+        private Shard(int index, long timeoutNs, Function<IcaoAddress, T> stateFactory, String name) {
+            this.index = index;
+            queue = new LinkedBlockingQueue<>();
+            states = new AircraftStateTable<>(timeoutNs, stateFactory);
+            worker = new Thread(this::run, name);
+            worker.setDaemon(true);
+        }
+
+        /**
+         * Body of the worker: applies the messages and builds the snapshots, in the order they were queued, until
+         * it is stopped, after which the snapshots remaining in its queue fail
+         */
+        @SuppressWarnings("unchecked")
+        private void run() {
+            Object task = null;
+            try {
+                while (true) {
+                    task = queue.take();
+                    if (task == STOP) return;
+                    if (task instanceof Message message) {
+                        try {
+                            states.update(message, receiverPosition);
+                            states.purge();
+                        } catch (RuntimeException e) {
+                            recordFailure(e);
+                        }
+                        // the count is only written by the worker, so that it can be incremented without atomicity
+                        messageCount = messageCount + 1;
+                    } else {
+                        ((SnapshotRequest<T, ?>) task).fill(index, states);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stopped = true;
+                // the snapshot being filled when the worker stopped, if any, fails as well
+                for (; task != null; task = queue.poll()) {
+                    if (task instanceof SnapshotRequest<?, ?> request) request.fail(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * A snapshot being built by the workers, each of them filling its own part
+     */
+    private static final class SnapshotRequest<T extends AircraftStateSetter, S> {
+        private final Function<? super T, ? extends S> copier;
+        private final List<List<S>> parts;
+        private final AtomicIntegerArray completedParts;
+        private final CountDownLatch remainingShards;
+        private volatile RuntimeException failure;
+
+        private SnapshotRequest(Function<? super T, ? extends S> copier, int shardCount) {
+            this.copier = copier;
+            parts = new ArrayList<>(shardCount);
+            for (int i = 0; i < shardCount; ++i) parts.add(List.of());
+            completedParts = new AtomicIntegerArray(shardCount);
+            remainingShards = new CountDownLatch(shardCount);
+        }
+
+        /**
+         * Copies the given states into the given part of the snapshot
+         *
+         * @param index  (int) index of the shard owning the states
+         * @param states (AircraftStateTable<T>)
+         */
+        private void fill(int index, AircraftStateTable<T> states) {
+            List<S> part = null;
+            RuntimeException exception = null;
+            try {
+                List<S> copies = new ArrayList<>(states.size());
+                states.forEach(state -> copies.add(copier.apply(state)));
+                part = copies;
+            } catch (RuntimeException e) {
+                exception = e;
+            }
+            if (!completedParts.compareAndSet(index, 0, 1)) return;
+            // the part is published to the reader by the count down of the latch
+            if (exception != null) failure = exception;
+            else parts.set(index, part);
+            remainingShards.countDown();
+        }
+
+        /**
+         * Makes the given part of the snapshot fail, unless it has already been filled
+         *
+         * @param index (int) index of a shard whose worker is stopped
+         */
+        private void fail(int index) {
+            if (!completedParts.compareAndSet(index, 0, 1)) return;
+            failure = new IllegalStateException("the worker of shard " + index + " is stopped");
+            remainingShards.countDown();
+        }
+
+        /**
+         * @return (List<S>) the copies of the states of all the shards, once they have all been filled
+         * @throws InterruptedException if the current thread is interrupted while waiting
+         */
+        private List<S> await() throws InterruptedException {
+            remainingShards.await();
+            if (failure != null) throw failure;
+            List<S> snapshot = new ArrayList<>();
+            for (List<S> part : parts) snapshot.addAll(part);
+            return snapshot;
+        }
+    }
+
+    /**
+     * public ShardedAircraftStateManager constructor
+     * Returns a manager whose workers are started
+     *
+     * @param shardCount   (int) number of shards, each of them having its own worker thread
+     * @param timeoutNs    (long) The time in nanoseconds after its last message from which an aircraft is purged
+     * @param stateFactory (Function<IcaoAddress, T>) creates the state of an aircraft appearing in a shard.
+     *                     It is called by the workers, possibly concurrently
+     * @throws IllegalArgumentException if shardCount is not strictly positive or if the timeout is negative
+     * @throws NullPointerException     if stateFactory is null
+     */
+    public ShardedAircraftStateManager(int shardCount, long timeoutNs, Function<IcaoAddress, T> stateFactory) {
+        Preconditions.checkArgument(shardCount > 0 && timeoutNs >= 0);
+        Objects.requireNonNull(stateFactory);
+        failureCount = new LongAdder();
+        int manager = MANAGER_COUNT.incrementAndGet();
+        shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; ++i) {
+            shards.add(new Shard(i, timeoutNs, stateFactory, "aircraft-state-shard-" + manager + "-" + (i + 1)));
+        }
+        for (Shard shard : shards) shard.worker.start();
+    }
+
+    /**
+     * @return (int) the number of shards of the manager
+     */
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @param address (IcaoAddress)
+     * @return (int) the index of the shard owning the aircraft with the given address
+     */
+    public int shardOf(IcaoAddress address) {
+        int hash = address.asInt() * HASH_MULTIPLIER;
+        hash ^= hash >>> Short.SIZE;
+        // maps the hash to [0, shardCount[ without a division
+        return (int) (((hash & 0xFFFF_FFFFL) * shards.size()) >>> Integer.SIZE);
+    }
+
+    /**
+     * Sets the position of the receiver, used to decode the first positions of the aircraft.
+     * Can be called from any thread
+     *
+     * @param receiverPosition (GeoPos) the position of the receiver, or null if it is unknown
+     */
+    public void setReceiverPosition(GeoPos receiverPosition) {
+        this.receiverPosition = receiverPosition;
+    }
+
+    /**
+     * Routes the given message to the shard of its sender. Can be called from any thread: the messages handed
+     * over by a given thread are applied in the order they were handed over
+     *
+     * @param message (Message)
+     * @throws IllegalStateException if the manager is closed. A message handed over while the manager is being
+     *                               closed may be dropped
+     */
+    public void updateWithMessage(Message message) {
+        if (closed) throw new IllegalStateException();
+        shards.get(shardOf(message.icaoAddress())).queue.add(message);
+    }
+
+    /**
+     * Returns a consistent snapshot of the states of all the aircraft, made of the copies of the states once all
+     * the messages handed over before the call have been applied, and none of the ones handed over after it.
+     * The copier is called by the workers, possibly concurrently, and must not keep any reference to the states
+     *
+     * @param copier (Function<? super T, ? extends S>) returns a copy of the given state
+     * @param <S>    the type of the copies
+     * @return (List<S>) the copies of the states, grouped by shard, each group being sorted from the aircraft
+     * whose last message is the oldest to the one whose last message is the most recent
+     * @throws InterruptedException  if the current thread is interrupted while waiting
+     * @throws IllegalStateException if the manager is closed, or if one of the workers stopped before filling its
+     *                               part of the snapshot
+     */
+    public <S> List<S> snapshot(Function<? super T, ? extends S> copier) throws InterruptedException {
+        SnapshotRequest<T, S> request = new SnapshotRequest<>(Objects.requireNonNull(copier), shards.size());
+        if (closed) throw new IllegalStateException();
+        for (Shard shard : shards) {
+            shard.queue.add(request);
+            // a worker stopping concurrently may not see the request anymore
+            if (shard.stopped) request.fail(shard.index);
+        }
+        return request.await();
+    }
+
+    /**
+     * @return (long) the number of messages applied by the workers so far
+     */
+    public long messageCount() {
+        long messageCount = 0;
+        for (Shard shard : shards) messageCount += shard.messageCount;
+        return messageCount;
+    }
+
+    /**
+     * @return (long) the number of messages whose application threw an exception, which the workers survived
+     */
+    public long failureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * @return (RuntimeException) the last exception thrown while applying a message, or null if there was none
+     */
+    public RuntimeException lastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Records an exception thrown by a worker while applying a message
+     *
+     * @param e (RuntimeException)
+     */
+    private void recordFailure(RuntimeException e) {
+        lastFailure = e;
+        failureCount.increment();
+    }
+
+    /**
+     * Stops the workers once they have applied all the messages handed over before the call, and waits for them.
+     * If the current thread is interrupted while waiting, it stops waiting and its interrupt status is set again
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (Shard shard : shards) shard.queue.add(STOP);
+        try {
+            for (Shard shard : shards) shard.worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package ch.epfl.javions.adsb;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.Units;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * This class represents the trajectory of an aircraft, made of its last points, each of them being a position,
+ * an altitude and a time stamp
+ * <p>
+ * The points are packed in a single array of longs used as a ring: once the trajectory holds its maximum number of
+ * points, adding a point evicts the oldest one, so that the memory used by a trajectory is bounded whatever the time
+ * the aircraft is followed. The array is only allocated when the first point is added, then doubles as points are
+ * added, up to the maximum number of points, so that the many aircraft that never get a position, or are followed
+ * briefly, use little or no memory for their trajectory. The points are read by index,
+ * without creating any object.
+ * <p>
+ * The trajectory is simplified as the points are added: as long as the aircraft keeps flying straight at the same
+ * altitude, the last point is moved to the new position instead of adding a point. The directions from the point
+ * before the last one, called the anchor, in which every point dropped since the anchor is closer than the
+ * tolerance to the line, form a cone that narrows with each dropped point; a new point replaces the last one only
+ * if its direction from the anchor is inside the cone, so that no dropped point is farther than the tolerance from
+ * the simplified trajectory.
+ * <p>
+ * Every point added gets a sequence number, one more than the one of the previous point, which it keeps when it is
+ * moved and which is not reused once it is evicted. A trajectory can thus be mirrored by another one without
+ * copying it entirely: the tail of the first one, starting at the last point the mirror has seen, replaces the
+ * points of the mirror from that point on.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class Trajectory {
+    /**
+     * default maximum number of points of a trajectory
+     */
+    public static final int DEFAULT_CAPACITY = 2048;
+    /**
+     * default maximum distance, in meters, between a dropped point and the simplified trajectory
+     */
+    public static final double DEFAULT_TOLERANCE = 30 * Units.Length.METER;
+    private static final int LONGS_PER_POINT = 3, POSITION = 0, ALTITUDE = 1, TIME_STAMP = 2;
+    private static final int INITIAL_RING_CAPACITY = 16;
+    private static final long[] NO_POINTS = new long[0];
+    private static final double T32_PER_METER =
+            Math.scalb(1d, Integer.SIZE) / (Units.Angle.TURN * GeoPos.EARTH_RADIUS);
+    private long[] points;
+    private final int capacity;
+    private final double toleranceT32;
+    private int first, size;
+    private long pointCount;
+    private boolean anchored, coneBounded;
+    private double coneDirection, coneMin, coneMax;
+
+    /**
+     * This interface represents an action applied to the points of a trajectory
+     */
+    @FunctionalInterface
+    public interface PointConsumer {
+        /**
+         * @param longitudeT32 (int) longitude of the point, in T32
+         * @param latitudeT32  (int) latitude of the point, in T32
+         * @param altitude     (double) altitude of the point, in meters
+         * @param timeStampNs  (long) time stamp of the point
+         */
+        void accept(int longitudeT32, int latitudeT32, double altitude, long timeStampNs);
+    }
+
+    /**
+     * public Trajectory default constructor
+     * Returns an empty trajectory with the default capacity and tolerance
+     */
+    public Trajectory() {
+        this(DEFAULT_CAPACITY, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * public Trajectory constructor
+     * Returns an empty trajectory
+     *
+     * @param capacity  (int) maximum number of points of the trajectory
+     * @param tolerance (double) maximum distance, in meters, between a dropped point and the simplified trajectory,
+     *                  0 to keep all the points
+     * @throws IllegalArgumentException if the capacity is smaller than 2 or if the tolerance is negative
+     */
+    public Trajectory(int capacity, double tolerance) {
+        Preconditions.checkArgument(capacity >= 2 && tolerance >= 0);
+        this.capacity = capacity;
+        points = NO_POINTS;
+        toleranceT32 = tolerance * T32_PER_METER;
+    }
+
+    /**
+     * Returns an empty trajectory that is not simplified, whose next point has the given sequence number
+     *
+     * @param capacity   (int) maximum number of points of the trajectory, strictly positive
+     * @param pointCount (long) sequence number of the next point
+     */
+    private Trajectory(int capacity, long pointCount) {
+        this.capacity = capacity;
+        points = new long[capacity * LONGS_PER_POINT];
+        toleranceT32 = 0;
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * @return (int) the number of points of the trajectory
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return (boolean) true iff the trajectory has no point
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return (int) the maximum number of points of the trajectory
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return (long) the number of points added since the creation of the trajectory, including the evicted ones,
+     * which is the sequence number of the next point
+     */
+    public long pointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @param index (int) index of a point, 0 being the oldest one
+     * @return (int) the longitude of the point, in T32
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public int longitudeT32(int index) {
+        return (int) (points[offset(index) + POSITION] >> Integer.SIZE);
+    }
+
+    /**
+     * @param index (int) index of a point, 0 being the oldest one
+     * @return (int) the latitude of the point, in T32
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public int latitudeT32(int index) {
+        return (int) points[offset(index) + POSITION];
+    }
+
+    /**
+     * @param index (int) index of a point, 0 being the oldest one
+     * @return (double) the altitude of the point, in meters
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public double altitude(int index) {
+        return Double.longBitsToDouble(points[offset(index) + ALTITUDE]);
+    }
+
+    /**
+     * @param index (int) index of a point, 0 being the oldest one
+     * @return (long) the time stamp of the point
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public long timeStampNs(int index) {
+        return points[offset(index) + TIME_STAMP];
+    }
+
+    /**
+     * @param index (int) index of a point, 0 being the oldest one
+     * @return (GeoPos) the position of the point
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public GeoPos position(int index) {
+        int offset = offset(index);
+        return new GeoPos((int) (points[offset + POSITION] >> Integer.SIZE), (int) points[offset + POSITION]);
+    }
+
+    /**
+     * Applies the given action to every point, from the oldest to the most recent
+     *
+     * @param action (PointConsumer)
+     */
+    public void forEach(PointConsumer action) {
+        for (int i = 0, offset = first * LONGS_PER_POINT; i < size; ++i) {
+            long position = points[offset + POSITION];
+            action.accept((int) (position >> Integer.SIZE), (int) position,
+                    Double.longBitsToDouble(points[offset + ALTITUDE]), points[offset + TIME_STAMP]);
+            offset += LONGS_PER_POINT;
+            if (offset == points.length) offset = 0;
+        }
+    }
+
+    /**
+     * Adds a point after the most recent one, or moves the most recent one to it if the trajectory stays straight
+     * and level, evicting the oldest point if the trajectory is full
+     *
+     * @param longitudeT32 (int) longitude of the point, in T32
+     * @param latitudeT32  (int) latitude of the point, in T32
+     * @param altitude     (double) altitude of the point, in meters
+     * @param timeStampNs  (long) time stamp of the point
+     */
+    public void add(int longitudeT32, int latitudeT32, double altitude, long timeStampNs) {
+        if (canReplaceLast(longitudeT32, latitudeT32, altitude)) {
+            write(size - 1, longitudeT32, latitudeT32, altitude, timeStampNs);
+            return;
+        }
+        append(longitudeT32, latitudeT32, altitude, timeStampNs);
+        anchored = size >= 2;
+        coneBounded = false;
+    }
+
+    /**
+     * Same as the previous method, with the position as a GeoPos
+     *
+     * @param position    (GeoPos) position of the point
+     * @param altitude    (double) altitude of the point, in meters
+     * @param timeStampNs (long) time stamp of the point
+     */
+    public void add(GeoPos position, double altitude, long timeStampNs) {
+        add(position.longitudeT32(), position.latitudeT32(), altitude, timeStampNs);
+    }
+
+    /**
+     * Replaces the most recent point by the given one, without simplifying the trajectory
+     *
+     * @param longitudeT32 (int) longitude of the point, in T32
+     * @param latitudeT32  (int) latitude of the point, in T32
+     * @param altitude     (double) altitude of the point, in meters
+     * @param timeStampNs  (long) time stamp of the point
+     * @throws IllegalStateException if the trajectory is empty
+     */
+    public void replaceLast(int longitudeT32, int latitudeT32, double altitude, long timeStampNs) {
+        if (size == 0) throw new IllegalStateException();
+        write(size - 1, longitudeT32, latitudeT32, altitude, timeStampNs);
+    }
+
+    /**
+     * Same as the previous method, with the position as a GeoPos
+     *
+     * @param position    (GeoPos) position of the point
+     * @param altitude    (double) altitude of the point, in meters
+     * @param timeStampNs (long) time stamp of the point
+     * @throws IllegalStateException if the trajectory is empty
+     */
+    public void replaceLast(GeoPos position, double altitude, long timeStampNs) {
+        replaceLast(position.longitudeT32(), position.latitudeT32(), altitude, timeStampNs);
+    }
+
+    /**
+     * Returns a copy of the points of this trajectory whose sequence number is greater than or equal to the given one,
+     * or of all its points if the given point has been evicted. The copy keeps the sequence numbers of the points
+     * and must not be modified
+     *
+     * @param firstSequence (long) sequence number of the first point to copy
+     * @return (Trajectory) the tail of this trajectory
+     */
+    public Trajectory tail(long firstSequence) {
+        int from = (int) Math.max(0, Math.min(size, firstSequence - (pointCount - size)));
+        Trajectory tail = new Trajectory(Math.max(size - from, 1), pointCount - (size - from));
+        for (int i = from; i < size; ++i) {
+            int offset = offset(i);
+            tail.append((int) (points[offset + POSITION] >> Integer.SIZE), (int) points[offset + POSITION],
+                    Double.longBitsToDouble(points[offset + ALTITUDE]), points[offset + TIME_STAMP]);
+        }
+        return tail;
+    }
+
+    /**
+     * Replaces the points of this trajectory whose sequence number is greater than or equal to the one of the first
+     * point of the given tail by the points of the tail, without simplifying them. If the tail does not follow the
+     * points of this trajectory, all of them are replaced
+     *
+     * @param tail (Trajectory) tail of a trajectory whose previous points are the ones of this trajectory
+     */
+    public void replaceTail(Trajectory tail) {
+        long tailFirstSequence = tail.pointCount - tail.size;
+        size = tailFirstSequence > pointCount ? 0 : (int) Math.max(0, tailFirstSequence - (pointCount - size));
+        if (size == 0) first = 0;
+        pointCount = tailFirstSequence;
+        for (int i = 0; i < tail.size; ++i) {
+            int offset = tail.offset(i);
+            append((int) (tail.points[offset + POSITION] >> Integer.SIZE), (int) tail.points[offset + POSITION],
+                    Double.longBitsToDouble(tail.points[offset + ALTITUDE]), tail.points[offset + TIME_STAMP]);
+        }
+        anchored = false;
+    }
+
+    /**
+     * Writes the points of this trajectory, with their sequence numbers
+     *
+     * @param out (DataOutput)
+     * @throws IOException in case of input/output error
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(pointCount);
+        out.writeInt(size);
+        for (int i = 0; i < size; ++i) {
+            int offset = offset(i);
+            out.writeLong(points[offset + POSITION]);
+            out.writeDouble(Double.longBitsToDouble(points[offset + ALTITUDE]));
+            out.writeLong(points[offset + TIME_STAMP]);
+        }
+    }
+
+    /**
+     * Replaces the points of this trajectory by the ones written by writeTo, without simplifying them. If there
+     * are more points than the capacity of this trajectory, only the most recent ones are kept
+     *
+     * @param in          (DataInput)
+     * @param timeShiftNs (long) shift added to the time stamps read
+     * @throws IOException in case of input/output error, or if the points read are invalid
+     */
+    public void readFrom(DataInput in, long timeShiftNs) throws IOException {
+        long readPointCount = in.readLong();
+        int readSize = in.readInt();
+        if (readSize < 0 || readPointCount < readSize) throw new IOException("invalid trajectory");
+        clear();
+        pointCount = readPointCount - readSize;
+        for (int i = 0; i < readSize; ++i) {
+            long position = in.readLong();
+            double altitude = in.readDouble();
+            long timeStampNs = in.readLong() + timeShiftNs;
+            if (!GeoPos.isValidLatitudeT32((int) position)) throw new IOException("invalid latitude");
+            append((int) (position >> Integer.SIZE), (int) position, altitude, timeStampNs);
+        }
+    }
+
+    /**
+     * Removes all the points
+     */
+    public void clear() {
+        first = 0;
+        size = 0;
+        anchored = false;
+    }
+
+    /**
+     * @param longitudeT32 (int)
+     * @param latitudeT32  (int)
+     * @param altitude     (double)
+     * @return (boolean) true iff the last point can be dropped in favour of the given one, in which case the cone
+     * has been narrowed by the last point
+     */
+    private boolean canReplaceLast(int longitudeT32, int latitudeT32, double altitude) {
+        if (!anchored || toleranceT32 == 0) return false;
+        int anchor = size - 2, last = size - 1;
+        if (Double.compare(altitude(anchor), altitude) != 0 || Double.compare(altitude(last), altitude) != 0) {
+            return false;
+        }
+
+        // coordinates relative to the anchor, in T32, the longitudes being scaled to the same length as the latitudes
+        int anchorLongitudeT32 = longitudeT32(anchor), anchorLatitudeT32 = latitudeT32(anchor);
+        double longitudeScale = Math.cos(Units.convertFrom(anchorLatitudeT32, Units.Angle.T32));
+        double lastX = (longitudeT32(last) - anchorLongitudeT32) * longitudeScale;
+        double lastY = (double) latitudeT32(last) - anchorLatitudeT32;
+        double newX = (longitudeT32 - anchorLongitudeT32) * longitudeScale;
+        double newY = (double) latitudeT32 - anchorLatitudeT32;
+        double lastDistance = Math.hypot(lastX, lastY);
+        if (Math.hypot(newX, newY) < lastDistance) return false;
+
+        boolean bounded = coneBounded;
+        double direction = coneDirection, min = coneMin, max = coneMax;
+        if (lastDistance > toleranceT32) {
+            double halfAngle = Math.asin(toleranceT32 / lastDistance);
+            double lastAngle = Math.atan2(lastY, lastX);
+            if (!bounded) {
+                bounded = true;
+                direction = lastAngle;
+                min = -halfAngle;
+                max = halfAngle;
+            } else {
+                double relativeAngle = Math.IEEEremainder(lastAngle - direction, Units.Angle.TURN);
+                min = Math.max(min, relativeAngle - halfAngle);
+                max = Math.min(max, relativeAngle + halfAngle);
+                if (min > max) return false;
+            }
+        }
+        if (bounded) {
+            double newAngle = Math.IEEEremainder(Math.atan2(newY, newX) - direction, Units.Angle.TURN);
+            if (newAngle < min || newAngle > max) return false;
+        }
+
+        coneBounded = bounded;
+        coneDirection = direction;
+        coneMin = min;
+        coneMax = max;
+        return true;
+    }
+
+    /**
+     * Adds a point after the most recent one, evicting the oldest point if the trajectory is full
+     *
+     * @param longitudeT32 (int)
+     * @param latitudeT32  (int)
+     * @param altitude     (double)
+     * @param timeStampNs  (long)
+     */
+    private void append(int longitudeT32, int latitudeT32, double altitude, long timeStampNs) {
+        if (size == capacity) {
+            first = (first + 1) % capacity;
+            --size;
+        } else if (size == ringCapacity()) {
+            grow();
+        }
+        ++size;
+        ++pointCount;
+        write(size - 1, longitudeT32, latitudeT32, altitude, timeStampNs);
+    }
+
+    /**
+     * Doubles the number of points the array can hold, or allocates it if it holds none, without exceeding the
+     * capacity, the oldest point being moved to the start of the new array
+     */
+    private void grow() {
+        long[] grown = new long[Math.min(capacity, Math.max(2 * ringCapacity(), INITIAL_RING_CAPACITY))
+                * LONGS_PER_POINT];
+        int firstOffset = first * LONGS_PER_POINT, headLength = Math.min(size * LONGS_PER_POINT,
+                points.length - firstOffset);
+        System.arraycopy(points, firstOffset, grown, 0, headLength);
+        System.arraycopy(points, 0, grown, headLength, size * LONGS_PER_POINT - headLength);
+        points = grown;
+        first = 0;
+    }
+
+    /**
+     * @return (int) the number of points the array can currently hold
+     */
+    private int ringCapacity() {
+        return points.length / LONGS_PER_POINT;
+    }
+
+    /**
+     * @param index (int)
+     * @return (int) the offset in the array of the point with the given index
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    private int offset(int index) {
+        Objects.checkIndex(index, size);
+        return (first + index) % ringCapacity() * LONGS_PER_POINT;
+    }
+
+    /**
+     * Writes a point at the given index, which must be valid
+     *
+     * @param index        (int)
+     * @param longitudeT32 (int)
+     * @param latitudeT32  (int)
+     * @param altitude     (double)
+     * @param timeStampNs  (long)
+     */
+    private void write(int index, int longitudeT32, int latitudeT32, double altitude, long timeStampNs) {
+        int offset = offset(index);
+        points[offset + POSITION] = (long) longitudeT32 << Integer.SIZE | (latitudeT32 & 0xFFFF_FFFFL);
+        points[offset + ALTITUDE] = Double.doubleToLongBits(altitude);
+        points[offset + TIME_STAMP] = timeStampNs;
+    }
+}
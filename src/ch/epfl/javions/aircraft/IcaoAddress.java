@@ -2,27 +2,108 @@ package ch.epfl.javions.aircraft;
 
 import ch.epfl.javions.Preconditions;
 
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 /**
- * This record represents an ICAO address
+ * This class represents an ICAO address
+ * <p>
+ * Besides its hexadecimal representation, an address keeps the 24-bit integer it encodes.
+ * Addresses obtained through of(int) are canonical: they are cached in a lazily populated
+ * two-level table, so that the messages of an aircraft that has already been seen share
+ * the same instance, without allocating a string or matching the pattern again.
  *
  * @author: Bouden Omar (341381)
  * @author: Tlili Ahmed (344939)
  */
-public record IcaoAddress(String string) {
+public final class IcaoAddress {
     public static final int ICAO_ADDRESS_LENGTH = 6;
+    /**
+     * number of bits of an ICAO address
+     */
+    public static final int SIZE = 24;
     /**
      * pattern of all valid ICAO addresses
      */
     private static final Pattern pattern = Pattern.compile("[0-9A-F]{6}");
+    private static final HexFormat HF = HexFormat.of().withUpperCase();
+    private static final int HEX_DIGITS_IN_INT = Integer.SIZE / 4;
+    private static final int PAGE_BITS = 12, PAGE_SIZE = 1 << PAGE_BITS, PAGE_MASK = PAGE_SIZE - 1;
+    private static final AtomicReferenceArray<AtomicReferenceArray<IcaoAddress>> CACHE =
+            new AtomicReferenceArray<>(1 << (SIZE - PAGE_BITS));
+    private final String string;
+    private final int value;
 
     /**
-     * public IcaoAddress compact constructor
+     * public IcaoAddress constructor
      *
-     * @throws IllegalArgumentException when the given string is not a valid ICAO address * @param string (String) given ICAO address
+     * @param string (String) given ICAO address
+     * @throws IllegalArgumentException when the given string is not a valid ICAO address
      */
-    public IcaoAddress {
+    public IcaoAddress(String string) {
         Preconditions.checkArgument(pattern.matcher(string).matches());
+        this.string = string;
+        this.value = Integer.parseInt(string, 16);
+    }
+
+    /**
+     * private IcaoAddress constructor, used to fill the cache
+     *
+     * @param value (int) 24-bit integer, already validated
+     */
+    private IcaoAddress(int value) {
+        this.string = HF.toHexDigits(value).substring(HEX_DIGITS_IN_INT - ICAO_ADDRESS_LENGTH);
+        this.value = value;
+    }
+
+    /**
+     * @param value (int) the 24 bits of the address, as found in a message
+     * @return (IcaoAddress) the canonical ICAO address corresponding to the given bits
+     * @throws IllegalArgumentException if value does not fit in 24 bits
+     */
+    public static IcaoAddress of(int value) {
+        Preconditions.checkArgument((value >>> SIZE) == 0);
+        int pageIndex = value >>> PAGE_BITS, index = value & PAGE_MASK;
+        AtomicReferenceArray<IcaoAddress> page = CACHE.get(pageIndex);
+        if (page == null) {
+            CACHE.compareAndSet(pageIndex, null, new AtomicReferenceArray<>(PAGE_SIZE));
+            page = CACHE.get(pageIndex);
+        }
+        IcaoAddress address = page.get(index);
+        if (address == null) {
+            page.compareAndSet(index, null, new IcaoAddress(value));
+            address = page.get(index);
+        }
+        return address;
+    }
+
+    /**
+     * @return (String) the hexadecimal representation of the address
+     */
+    public String string() {
+        return string;
+    }
+
+    /**
+     * @return (int) the 24-bit integer encoded by the address
+     */
+    public int asInt() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object other0) {
+        return (other0 instanceof IcaoAddress other) && other.value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return "IcaoAddress[string=" + string + "]";
     }
 }
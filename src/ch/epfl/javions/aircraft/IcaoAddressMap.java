@@ -0,0 +1,188 @@
+package ch.epfl.javions.aircraft;
+
+import ch.epfl.javions.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a map whose keys are ICAO addresses, given as their 24 bits
+ * <p>
+ * The keys are stored in a primitive array using open addressing with linear probing, so that looking up an
+ * aircraft neither allocates nor hashes any object. Removed entries do not leave tombstones behind: the
+ * entries following them in their probe sequence are shifted back instead, so that the table never has to
+ * be cleaned up, whatever the number of aircraft that appeared and disappeared.
+ *
+ * @param <V> the type of the values
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class IcaoAddressMap<V> {
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+    private int[] keys;
+    private Object[] values;
+    private int mask, size;
+
+    /**
+     * public IcaoAddressMap default constructor
+     * Returns an empty map
+     */
+    public IcaoAddressMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * public IcaoAddressMap constructor
+     * Returns an empty map able to hold the given number of entries without growing
+     *
+     * @param expectedSize (int) expected number of entries
+     * @throws IllegalArgumentException if expectedSize is negative or greater than the number of ICAO addresses
+     */
+    public IcaoAddressMap(int expectedSize) {
+        Preconditions.checkArgument(0 <= expectedSize && expectedSize <= 1 << IcaoAddress.SIZE);
+        allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize)) << 2));
+    }
+
+    /**
+     * Replaces the arrays of the map by empty ones
+     *
+     * @param capacity (int) number of slots, which is a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param key (int)
+     * @return (int) the slot where the search of the given key starts
+     */
+    private int home(int key) {
+        int hash = key * HASH_MULTIPLIER;
+        return (hash ^ (hash >>> Short.SIZE)) & mask;
+    }
+
+    /**
+     * @param key (int)
+     * @return (int) the slot containing the given key, or the empty slot where it would be inserted
+     */
+    private int slotOf(int key) {
+        int slot = home(key);
+        while (keys[slot] != key && keys[slot] != EMPTY) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * @param key (int) the 24 bits of an ICAO address
+     * @throws IllegalArgumentException if the key is not a 24-bit value
+     */
+    private static void checkKey(int key) {
+        Preconditions.checkArgument((key >>> IcaoAddress.SIZE) == 0);
+    }
+
+    /**
+     * @return (int) the number of entries of the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key (int) the 24 bits of an ICAO address
+     * @return (V) the value associated to the given key, or null if there is none
+     * @throws IllegalArgumentException if the key is not a 24-bit value
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        checkKey(key);
+        return (V) values[slotOf(key)];
+    }
+
+    /**
+     * @param key (int) the 24 bits of an ICAO address
+     * @return (boolean) true iff a value is associated to the given key
+     * @throws IllegalArgumentException if the key is not a 24-bit value
+     */
+    public boolean containsKey(int key) {
+        checkKey(key);
+        return keys[slotOf(key)] == key;
+    }
+
+    /**
+     * Associates the given value to the given key
+     *
+     * @param key   (int) the 24 bits of an ICAO address
+     * @param value (V) value, which must not be null
+     * @return (V) the value previously associated to the given key, or null if there was none
+     * @throws IllegalArgumentException if the key is not a 24-bit value or if the value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        checkKey(key);
+        Preconditions.checkArgument(value != null);
+        int slot = slotOf(key);
+        V previous = (V) values[slot];
+        values[slot] = value;
+        if (previous == null) {
+            keys[slot] = key;
+            if (++size > keys.length / 2) grow();
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the entry of the given key, if any, shifting back the entries that follow it
+     * in its probe sequence
+     *
+     * @param key (int) the 24 bits of an ICAO address
+     * @return (V) the value that was associated to the given key, or null if there was none
+     * @throws IllegalArgumentException if the key is not a 24-bit value
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        checkKey(key);
+        int hole = slotOf(key);
+        V previous = (V) values[hole];
+        if (previous == null) return null;
+
+        for (int slot = (hole + 1) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            // the entry can fill the hole iff the hole is between its home slot and its slot
+            if (((slot - home(keys[slot])) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        --size;
+        return previous;
+    }
+
+    /**
+     * Removes all the entries of the map
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Doubles the number of slots of the map, keeping its entries
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = slotOf(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
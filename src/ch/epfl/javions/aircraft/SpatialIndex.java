@@ -0,0 +1,449 @@
+package ch.epfl.javions.aircraft;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.Units;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * This class represents an index of values associated to ICAO addresses, typically the states of aircraft, by
+ * their position
+ * <p>
+ * The index is a uniform grid in T32 space, whose square cells are only stored when they are not empty: each of
+ * them holds the list of its values, which are linked to one another so that a value moving to another cell is
+ * unlinked and linked again without visiting any other value. A query only visits the cells intersecting the area
+ * queried, or all the values if there are fewer values than cells to visit. The cells are stored in a hash map,
+ * by a key made of their row then their column.
+ * <p>
+ * An index is not thread-safe: it must only be accessed by one thread at a time.
+ *
+ * @param <V> the type of the values
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+public final class SpatialIndex<V> {
+    /**
+     * default number of bits of the column of a cell, the cells being about 39 km wide at the equator
+     */
+    public static final int DEFAULT_CELL_BITS = 10;
+    /**
+     * number of bits of the key of a cell, made of its row then its column, with the smallest cells supported,
+     * which are about 10 km wide at the equator
+     */
+    private static final int MAX_CELL_KEY_BITS = 23;
+    private static final int MAX_CELL_BITS = (MAX_CELL_KEY_BITS + 1) / 2;
+    private static final int MIN_LATITUDE_T32 = -(1 << 30), MAX_LATITUDE_T32 = 1 << 30;
+    private final int cellBits, cellShift, columns, rows;
+    private final IcaoAddressMap<Entry<V>> entriesByAddress;
+    private final Map<Integer, Entry<V>> cells;
+    private final List<Entry<V>> entries;
+
+    /**
+     * A value of the index, linked to the other values of its cell
+     */
+    private static final class Entry<V> {
+        private final int address;
+        private V value;
+        private GeoPos position;
+        private int cell, index;
+        private Entry<V> previous, next;
+
+        private Entry(int address) {
+            this.address = address;
+        }
+    }
+
+    /**
+     * A value found by a nearest neighbours query, with its distance to the point queried
+     */
+    private record Candidate<V>(Entry<V> entry, double distance) {
+    }
+
+    /**
+     * public SpatialIndex default constructor
+     * Returns an empty index whose cells have the default size
+     */
+    public SpatialIndex() {
+        this(DEFAULT_CELL_BITS);
+    }
+
+    /**
+     * public SpatialIndex constructor
+     * Returns an empty index dividing the longitudes into 2^cellBits columns, and the latitudes into half as many
+     * rows
+     *
+     * @param cellBits (int) number of bits of the column of a cell
+     * @throws IllegalArgumentException if cellBits is not between 1 and 12
+     */
+    public SpatialIndex(int cellBits) {
+        Preconditions.checkArgument(1 <= cellBits && cellBits <= MAX_CELL_BITS);
+        this.cellBits = cellBits;
+        cellShift = Integer.SIZE - cellBits;
+        columns = 1 << cellBits;
+        rows = 1 << (cellBits - 1);
+        entriesByAddress = new IcaoAddressMap<>();
+        cells = new HashMap<>();
+        entries = new ArrayList<>();
+    }
+
+    /**
+     * @return (int) the number of values of the index
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param address (IcaoAddress)
+     * @return (V) the value associated to the given address, or null if there is none
+     */
+    public V get(IcaoAddress address) {
+        Entry<V> entry = entriesByAddress.get(address.asInt());
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Associates the given value and position to the given address, replacing the previous ones if any
+     *
+     * @param address  (IcaoAddress)
+     * @param position (GeoPos) position of the value
+     * @param value    (V) value, which must not be null
+     * @throws IllegalArgumentException if the value is null
+     */
+    public void put(IcaoAddress address, GeoPos position, V value) {
+        Preconditions.checkArgument(value != null);
+        int cell = cellOf(position.longitudeT32(), position.latitudeT32());
+        Entry<V> entry = entriesByAddress.get(address.asInt());
+        if (entry == null) {
+            entry = new Entry<>(address.asInt());
+            entriesByAddress.put(entry.address, entry);
+            entry.index = entries.size();
+            entries.add(entry);
+            link(entry, cell);
+        } else if (entry.cell != cell) {
+            unlink(entry);
+            link(entry, cell);
+        }
+        entry.value = value;
+        entry.position = position;
+    }
+
+    /**
+     * Removes the value associated to the given address, if any
+     *
+     * @param address (IcaoAddress)
+     * @return (V) the value removed, or null if there was none
+     */
+    public V remove(IcaoAddress address) {
+        Entry<V> entry = entriesByAddress.remove(address.asInt());
+        if (entry == null) return null;
+        unlink(entry);
+        // the last entry takes the place of the removed one
+        Entry<V> last = entries.remove(entries.size() - 1);
+        if (last != entry) {
+            last.index = entry.index;
+            entries.set(entry.index, last);
+        }
+        return entry.value;
+    }
+
+    /**
+     * Applies the given action to every value whose position is in the given box, bounds included. The box crosses
+     * the antimeridian if its minimal longitude is greater than its maximal one
+     *
+     * @param minLongitudeT32 (int) western longitude of the box, in T32
+     * @param maxLongitudeT32 (int) eastern longitude of the box, in T32
+     * @param minLatitudeT32  (int) southern latitude of the box, in T32
+     * @param maxLatitudeT32  (int) northern latitude of the box, in T32
+     * @param action          (Consumer<? super V>) action, which must not modify the index
+     */
+    public void forEachWithin(int minLongitudeT32, int maxLongitudeT32, int minLatitudeT32, int maxLatitudeT32,
+                              Consumer<? super V> action) {
+        forEachEntryWithin(minLongitudeT32, maxLongitudeT32, minLatitudeT32, maxLatitudeT32,
+                entry -> action.accept(entry.value));
+    }
+
+    /**
+     * Same as the previous method, returning the values rather than applying an action to them
+     *
+     * @param minLongitudeT32 (int) western longitude of the box, in T32
+     * @param maxLongitudeT32 (int) eastern longitude of the box, in T32
+     * @param minLatitudeT32  (int) southern latitude of the box, in T32
+     * @param maxLatitudeT32  (int) northern latitude of the box, in T32
+     * @return (List<V>) the values whose position is in the box, in no particular order
+     */
+    public List<V> within(int minLongitudeT32, int maxLongitudeT32, int minLatitudeT32, int maxLatitudeT32) {
+        List<V> values = new ArrayList<>();
+        forEachWithin(minLongitudeT32, maxLongitudeT32, minLatitudeT32, maxLatitudeT32, values::add);
+        return values;
+    }
+
+    /**
+     * @param center (GeoPos) center of the circle
+     * @param radius (double) radius of the circle, in meters
+     * @return (List<V>) the values whose position is at most at the given distance from the center, along the
+     * surface of the Earth, in no particular order
+     */
+    public List<V> withinRadius(GeoPos center, double radius) {
+        List<V> values = new ArrayList<>();
+        if (radius < 0) return values;
+        double angularRadius = radius / GeoPos.EARTH_RADIUS;
+        double minLatitude = center.latitude() - angularRadius, maxLatitude = center.latitude() + angularRadius;
+        int minLongitudeT32 = Integer.MIN_VALUE, maxLongitudeT32 = Integer.MAX_VALUE;
+        // the longitudes of the circle are only bounded if it contains no pole
+        double sinLongitudeExtent = Math.sin(angularRadius) / Math.cos(center.latitude());
+        if (maxLatitude < Units.Angle.TURN / 4 && minLatitude > -Units.Angle.TURN / 4 && sinLongitudeExtent < 1) {
+            long longitudeExtentT32 = (long) Math.ceil(Units.convert(Math.asin(sinLongitudeExtent),
+                    Units.Angle.RADIAN, Units.Angle.T32));
+            minLongitudeT32 = (int) (center.longitudeT32() - longitudeExtentT32);
+            maxLongitudeT32 = (int) (center.longitudeT32() + longitudeExtentT32);
+        }
+        forEachEntryWithin(minLongitudeT32, maxLongitudeT32, latitudeT32(minLatitude), latitudeT32(maxLatitude),
+                entry -> {
+                    if (center.distanceTo(entry.position) <= radius) values.add(entry.value);
+                });
+        return values;
+    }
+
+    /**
+     * @param center (GeoPos) point queried
+     * @param k      (int) maximum number of values
+     * @return (List<V>) the k values whose position is the nearest to the given point, along the surface of the
+     * Earth, from the nearest to the farthest, or all the values if there are fewer than k of them
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<V> nearest(GeoPos center, int k) {
+        Preconditions.checkArgument(k >= 0);
+        if (k == 0 || entries.isEmpty()) return List.of();
+        // the farthest of the k nearest values found so far is at the head of the queue
+        PriorityQueue<Candidate<V>> nearest =
+                new PriorityQueue<>(Comparator.comparingDouble((Candidate<V> c) -> c.distance()).reversed());
+        Consumer<Entry<V>> visitor = entry -> {
+            double distance = center.distanceTo(entry.position);
+            if (nearest.size() < k) nearest.add(new Candidate<>(entry, distance));
+            else if (distance < nearest.peek().distance()) {
+                nearest.poll();
+                nearest.add(new Candidate<>(entry, distance));
+            }
+        };
+
+        int centerColumn = column(center.longitudeT32()), centerRow = row(center.latitudeT32());
+        for (int ring = 0; ; ++ring) {
+            // all the values are visited at once if all of them are returned, or if there are fewer of them than
+            // cells in the next ring, which is made of at most 8 * ring cells
+            if (k >= entries.size() || 8L * ring > entries.size()) {
+                nearest.clear();
+                entries.forEach(visitor);
+                break;
+            }
+            visitRing(centerColumn, centerRow, ring, visitor);
+            double bound = distanceOutside(center, centerColumn, centerRow, ring);
+            if (bound == Double.POSITIVE_INFINITY || nearest.size() == k && nearest.peek().distance() <= bound) break;
+        }
+
+        List<V> values = new ArrayList<>(nearest.size());
+        while (!nearest.isEmpty()) values.add(nearest.poll().entry().value);
+        Collections.reverse(values);
+        return values;
+    }
+
+    /**
+     * Applies the given action to every entry of the cells at the given distance from the given cell, the distance
+     * between two cells being the largest of the numbers of rows and of columns between them
+     *
+     * @param centerColumn (int)
+     * @param centerRow    (int)
+     * @param ring         (int) distance of the cells
+     * @param action       (Consumer<Entry<V>>)
+     */
+    private void visitRing(int centerColumn, int centerRow, int ring, Consumer<Entry<V>> action) {
+        boolean allColumns = 2 * ring + 1 >= columns;
+        for (int row = Math.max(0, centerRow - ring); row <= Math.min(rows - 1, centerRow + ring); ++row) {
+            if (Math.abs(row - centerRow) == ring) {
+                // the whole row of the ring
+                int columnCount = allColumns ? columns : 2 * ring + 1;
+                int column = allColumns ? 0 : (centerColumn - ring) & (columns - 1);
+                for (int i = 0; i < columnCount; ++i, column = (column + 1) & (columns - 1)) {
+                    visitCell(row << cellBits | column, action);
+                }
+            } else if (2 * ring <= columns) {
+                // the sides of the ring, which are the same column once the ring goes half around the Earth
+                visitCell(row << cellBits | ((centerColumn - ring) & (columns - 1)), action);
+                if (ring > 0 && 2 * ring < columns) {
+                    visitCell(row << cellBits | ((centerColumn + ring) & (columns - 1)), action);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cell   (int)
+     * @param action (Consumer<Entry<V>>) action applied to every entry of the given cell
+     */
+    private void visitCell(int cell, Consumer<Entry<V>> action) {
+        for (Entry<V> entry = cells.get(cell); entry != null; entry = entry.next) action.accept(entry);
+    }
+
+    /**
+     * @param center       (GeoPos)
+     * @param centerColumn (int) column of the center
+     * @param centerRow    (int) row of the center
+     * @param ring         (int)
+     * @return (double) a lower bound of the distance, in meters, from the center to the cells farther than the
+     * given ring from the cell of the center, or infinity if there is no such cell
+     */
+    private double distanceOutside(GeoPos center, int centerColumn, int centerRow, int ring) {
+        double bound = Double.POSITIVE_INFINITY;
+        if (centerRow + ring + 1 < rows) {
+            bound = Math.min(bound, rowLatitude(centerRow + ring + 1) - center.latitude());
+        }
+        if (centerRow - ring > 0) {
+            bound = Math.min(bound, center.latitude() - rowLatitude(centerRow - ring));
+        }
+        if (2 * ring + 1 < columns) {
+            // the distance to the nearest meridian bounding the columns of the ring
+            long centerOffsetT32 = (long) center.longitudeT32() - Integer.MIN_VALUE;
+            long eastT32 = ((long) (centerColumn + ring + 1) << cellShift) - centerOffsetT32;
+            long westT32 = centerOffsetT32 - ((long) (centerColumn - ring) << cellShift);
+            double deltaLongitude = Units.convertFrom(Math.min(eastT32, westT32), Units.Angle.T32);
+            bound = Math.min(bound, deltaLongitude < Units.Angle.TURN / 4
+                    ? Math.asin(Math.cos(center.latitude()) * Math.sin(deltaLongitude))
+                    : Units.Angle.TURN / 4 - Math.abs(center.latitude()));
+        }
+        return bound * GeoPos.EARTH_RADIUS;
+    }
+
+    /**
+     * Applies the given action to every entry whose position is in the given box, as in forEachWithin
+     *
+     * @param minLongitudeT32 (int)
+     * @param maxLongitudeT32 (int)
+     * @param minLatitudeT32  (int)
+     * @param maxLatitudeT32  (int)
+     * @param action          (Consumer<Entry<V>>)
+     */
+    private void forEachEntryWithin(int minLongitudeT32, int maxLongitudeT32, int minLatitudeT32, int maxLatitudeT32,
+                                    Consumer<Entry<V>> action) {
+        if (minLatitudeT32 > maxLatitudeT32 || entries.isEmpty()) return;
+        int firstColumn = column(minLongitudeT32), lastColumn = column(maxLongitudeT32);
+        int firstRow = row(minLatitudeT32), lastRow = row(maxLatitudeT32);
+        long columnCount = minLongitudeT32 <= maxLongitudeT32
+                ? lastColumn - firstColumn + 1
+                : Math.min(columns, columns - firstColumn + lastColumn + 1);
+
+        if (columnCount * (lastRow - firstRow + 1) > entries.size()) {
+            for (Entry<V> entry : entries) {
+                if (isWithin(entry.position, minLongitudeT32, maxLongitudeT32, minLatitudeT32, maxLatitudeT32)) {
+                    action.accept(entry);
+                }
+            }
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; ++row) {
+            for (int i = 0, column = firstColumn; i < columnCount; ++i, column = (column + 1) & (columns - 1)) {
+                for (Entry<V> entry = cells.get(row << cellBits | column); entry != null; entry = entry.next) {
+                    if (isWithin(entry.position, minLongitudeT32, maxLongitudeT32, minLatitudeT32, maxLatitudeT32)) {
+                        action.accept(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param position        (GeoPos)
+     * @param minLongitudeT32 (int)
+     * @param maxLongitudeT32 (int)
+     * @param minLatitudeT32  (int)
+     * @param maxLatitudeT32  (int)
+     * @return (boolean) true iff the given position is in the given box
+     */
+    private static boolean isWithin(GeoPos position, int minLongitudeT32, int maxLongitudeT32, int minLatitudeT32,
+                                    int maxLatitudeT32) {
+        int longitudeT32 = position.longitudeT32(), latitudeT32 = position.latitudeT32();
+        if (latitudeT32 < minLatitudeT32 || latitudeT32 > maxLatitudeT32) return false;
+        return minLongitudeT32 <= maxLongitudeT32
+                ? minLongitudeT32 <= longitudeT32 && longitudeT32 <= maxLongitudeT32
+                : minLongitudeT32 <= longitudeT32 || longitudeT32 <= maxLongitudeT32;
+    }
+
+    /**
+     * @param latitude (double) latitude in radians
+     * @return (int) the given latitude in T32, clamped to the valid latitudes
+     */
+    private static int latitudeT32(double latitude) {
+        double latitudeT32 = Units.convert(latitude, Units.Angle.RADIAN, Units.Angle.T32);
+        return (int) Math.max(MIN_LATITUDE_T32, Math.min(MAX_LATITUDE_T32, Math.rint(latitudeT32)));
+    }
+
+    /**
+     * @param row (int)
+     * @return (double) the southern latitude of the given row, in radians
+     */
+    private double rowLatitude(int row) {
+        return Units.convertFrom(((long) row << cellShift) + MIN_LATITUDE_T32, Units.Angle.T32);
+    }
+
+    /**
+     * @param longitudeT32 (int)
+     * @return (int) the column of the given longitude
+     */
+    private int column(int longitudeT32) {
+        return (longitudeT32 - Integer.MIN_VALUE) >>> cellShift;
+    }
+
+    /**
+     * @param latitudeT32 (int)
+     * @return (int) the row of the given latitude, clamped to the valid rows
+     */
+    private int row(int latitudeT32) {
+        long offset = Math.max(0, (long) latitudeT32 - MIN_LATITUDE_T32);
+        return (int) Math.min(rows - 1, offset >>> cellShift);
+    }
+
+    /**
+     * @param longitudeT32 (int)
+     * @param latitudeT32  (int)
+     * @return (int) the cell of the given position
+     */
+    private int cellOf(int longitudeT32, int latitudeT32) {
+        return row(latitudeT32) << cellBits | column(longitudeT32);
+    }
+
+    /**
+     * Adds the given entry to the list of the given cell
+     *
+     * @param entry (Entry<V>) entry which is not linked
+     * @param cell  (int)
+     */
+    private void link(Entry<V> entry, int cell) {
+        Entry<V> head = cells.get(cell);
+        entry.cell = cell;
+        entry.previous = null;
+        entry.next = head;
+        if (head != null) head.previous = entry;
+        cells.put(cell, entry);
+    }
+
+    /**
+     * Removes the given entry from the list of its cell
+     *
+     * @param entry (Entry<V>) linked entry
+     */
+    private void unlink(Entry<V> entry) {
+        if (entry.previous != null) entry.previous.next = entry.next;
+        else if (entry.next != null) cells.put(entry.cell, entry.next);
+        else cells.remove(entry.cell);
+        if (entry.next != null) entry.next.previous = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+    }
+}
@@ -45,7 +45,8 @@ public class AdsbDemodulator {
             sigmaV = powerWindow.get(5) + powerWindow.get(15) + powerWindow.get(20) + powerWindow.get(25) +
                     powerWindow.get(30) + powerWindow.get(40);
             if (sigmaPMinusOne < sigmaP0 && sigmaP0 > sigmaP1 && sigmaP0 >= 2 * sigmaV && getDF() == 17) {
-                RawMessage rawMessage = RawMessage.of(powerWindow.position() * TIMESTAMPS_MULTIPLICATION_FACTOR, getContent());
+                RawMessage rawMessage = RawMessage.of(powerWindow.position() * TIMESTAMPS_MULTIPLICATION_FACTOR,
+                        getContent(0, Long.BYTES), getContent(Long.BYTES, RawMessage.LENGTH - Long.BYTES));
                 if (rawMessage != null) {
                     powerWindow.advanceBy(WINDOW_SIZE);
                     sigmaPMinusOne = SIGMA_DEFAULT_VALUE;
@@ -62,21 +63,18 @@ public class AdsbDemodulator {
     }
 
     /**
-     * @return (byte[]) the bytes corresponding to the ADS-B message
+     * @param fromByte (int) index of the first byte to decode
+     * @param count    (int) number of bytes to decode, at most 8
+     * @return (long) the given bytes of the ADS-B message, in big-endian order in the least significant bytes
+     * of the returned value, so that the CRC can be checked before any array is allocated
      */
-    private byte[] getContent() {
-        int index = 0;
-        byte[] bytes = new byte[RawMessage.LENGTH];
-        byte temp = 0;
-        for (int i = 0; i < bytes.length * Byte.SIZE; ++i) {
-            byte b = (byte) (powerWindow.get(80 + 10 * i) < powerWindow.get(85 + 10 * i) ? 0 : 1);
-            temp = (byte) ((temp << 1) | b);
-            if (i % 8 == 7) {
-                bytes[index++] = temp;
-                temp = 0;
-            }
+    private long getContent(int fromByte, int count) {
+        long content = 0;
+        for (int i = fromByte * Byte.SIZE; i < (fromByte + count) * Byte.SIZE; ++i) {
+            int b = powerWindow.get(80 + 10 * i) < powerWindow.get(85 + 10 * i) ? 0 : 1;
+            content = (content << 1) | b;
         }
-        return bytes;
+        return content;
     }
 
     /**
@@ -4,10 +4,10 @@ import ch.epfl.javions.GeoPos;
 import ch.epfl.javions.Units;
 import ch.epfl.javions.WebMercator;
 import ch.epfl.javions.aircraft.*;
-import ch.epfl.javions.gui.ObservableAircraftState.AirbornePos;
+import ch.epfl.javions.adsb.Trajectory;
+import javafx.animation.AnimationTimer;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.ObjectProperty;
-import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableSet;
 import javafx.collections.SetChangeListener;
@@ -24,7 +24,10 @@ import javafx.scene.shape.SVGPath;
 import javafx.scene.shape.Shape;
 import javafx.scene.text.Text;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static javafx.scene.paint.CycleMethod.NO_CYCLE;
 
@@ -47,7 +50,14 @@ import static javafx.scene.paint.CycleMethod.NO_CYCLE;
  * <p>
  * The altitude of the aircraft is used to determine the color of the aircraft icon and its trajectory on the map. A predefined color ramp named "plasma" is used to map altitudes to colors.
  * <p>
- * This class also handles the construction of trajectory lines on the map. Trajectory lines are visible when a plane is selected, and they are constructed by joining the consecutive `AirbornePos` objects in the plane's trajectory list using `Line` objects. The color of each line segment depends on the altitudes of the `AirbornePos` objects at its endpoints.
+ * The icons are not bound to the positions of the aircraft, which are only received about twice a second. Instead,
+ * at every frame, a single pass over all the aircraft extrapolates their displayed positions from their last
+ * position, velocity and track, during at most a few seconds. An icon snaps back to the received position as soon
+ * as a new one arrives. If the controller is given the spatial index of the aircraft, only the aircraft near the
+ * visible part of the map are visited: the icons of the other ones are hidden, so that the work done per frame
+ * depends on the number of aircraft visible rather than on the number of aircraft tracked.
+ * <p>
+ * This class also handles the construction of trajectory lines on the map. Trajectory lines are visible when a plane is selected, and they are constructed by joining the consecutive points of the plane's trajectory using `Line` objects. The color of each line segment depends on the altitudes of the points at its endpoints.
  *
  * @author: Tlili Ahmed (344939)
  * @author: Bouden Omar (341381)
@@ -64,12 +74,39 @@ public final class AircraftController {
     private final ObservableSet<ObservableAircraftState> states;
     private final Pane pane;
     private final ObjectProperty<ObservableAircraftState> aircraftWithVisibleProperties;
-    private static final int LINE_START = 0;
     private static final int GRADIENT_START_X = 0, GRADIENT_START_Y = 0,
             GRADIENT_END_X = 1, GRADIENT_END_Y = 0;
     private static final int STOP_OFFSET_FIRST = 0, STOP_OFFSET_SECOND = 1;
-    private static final int MINIMAL_TRAJECTORY_SIZE = 2;
     private static final int DEFAULT_LINE_WIDTH = 3;
+    private static final long MAX_EXTRAPOLATION_NS = 5_000_000_000L;
+    private static final double NANOSECONDS_PER_SECOND = 1e9;
+    // the aircraft near the visible part of the map, farther than the extrapolation and the labels go, are visited
+    private static final double CULLING_MARGIN_PIXELS = 100, CULLING_MARGIN_METERS = 3_000;
+    private static final int MIN_LATITUDE_T32 = -(1 << 30), MAX_LATITUDE_T32 = 1 << 30;
+    private final Map<ObservableAircraftState, Track> tracks;
+    private final SpatialIndex<ObservableAircraftState> spatialIndex;
+    private List<Track> shownTracks, previouslyShownTracks;
+    private long frame;
+    private long clockTimeStampNs = Long.MIN_VALUE, clockFrameNs, newestTimeStampNs;
+    private int shownZoom = -1;
+    private double shownMinX = Double.NaN, shownMinY = Double.NaN;
+
+    /**
+     * The displayed position of an aircraft, with the received position it is extrapolated from
+     */
+    private static final class Track {
+        private final ObservableAircraftState state;
+        private final Group iconLabelGroup;
+        private GeoPos fix;
+        private long fixTimeStampNs;
+        private boolean shown;
+        private long shownFrame;
+
+        private Track(ObservableAircraftState state, Group iconLabelGroup) {
+            this.state = state;
+            this.iconLabelGroup = iconLabelGroup;
+        }
+    }
 
     /**
      * AircraftController's public constructor
@@ -81,13 +118,40 @@ public final class AircraftController {
      */
     public AircraftController(MapParameters mapParameters, ObservableSet<ObservableAircraftState> states,
                               ObjectProperty<ObservableAircraftState> aircraftWithVisibleProperties) {
+        this(mapParameters, states, aircraftWithVisibleProperties, null);
+    }
+
+    /**
+     * Same as the previous constructor, with the spatial index of the aircraft, used to only visit the aircraft
+     * near the visible part of the map at every frame
+     *
+     * @param mapParameters (MapParameters) map variant parameters
+     * @param states (ObservableSet<ObservableAircraftState>) set of aircraft states to display
+     * @param aircraftWithVisibleProperties (ObjectProperty<ObservableAircraftState>) property storing the state of the active plane,
+     *                                       i.e., the plane whose trajectory is drawn on every change
+     * @param spatialIndex (SpatialIndex<ObservableAircraftState>) index of the given aircraft by their position, kept
+     *                     up to date by their manager, or null to visit all the aircraft
+     */
+    public AircraftController(MapParameters mapParameters, ObservableSet<ObservableAircraftState> states,
+                              ObjectProperty<ObservableAircraftState> aircraftWithVisibleProperties,
+                              SpatialIndex<ObservableAircraftState> spatialIndex) {
         this.mapParameters = mapParameters;
         this.states = states;
         this.aircraftWithVisibleProperties = aircraftWithVisibleProperties;
+        this.spatialIndex = spatialIndex;
         pane = new Pane();
+        tracks = new HashMap<>();
+        shownTracks = new ArrayList<>();
+        previouslyShownTracks = new ArrayList<>();
 
         setUpPane();
         setUpListeners();
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                extrapolatePositions(now);
+            }
+        }.start();
     }
 
     /**
@@ -143,12 +207,9 @@ public final class AircraftController {
         trajectoryGroup.visibleProperty().addListener(e -> {
             if(trajectoryGroup.isVisible()) constructAllTrajectoryLines(trajectoryGroup, state.getTrajectory());
         });
-        state.getTrajectory().addListener((ListChangeListener<AirbornePos>) change -> {
-            if(trajectoryGroup.isVisible()) {
-                int size = state.getTrajectory().size();
-                if(size>=MINIMAL_TRAJECTORY_SIZE)
-                    trajectoryGroup.getChildren().add(lineFromTwoAirbornePos(state.getTrajectory().get(size-MINIMAL_TRAJECTORY_SIZE), state.getTrajectory().get(size-MINIMAL_TRAJECTORY_SIZE+1)));
-            }
+        // the last point may have been moved and the first ones evicted, so that all the lines are rebuilt
+        state.trajectoryVersionProperty().addListener(e -> {
+            if(trajectoryGroup.isVisible()) constructAllTrajectoryLines(trajectoryGroup, state.getTrajectory());
         });
         mapParameters.getZoomProperty().addListener(e -> {
             if(trajectoryGroup.isVisible()) constructAllTrajectoryLines(trajectoryGroup, state.getTrajectory());
@@ -159,14 +220,11 @@ public final class AircraftController {
     }
     private Group group(ObservableAircraftState state){
         Group iconLabelGroup = new Group(icon(state), label(state));
-        iconLabelGroup.layoutXProperty().bind(Bindings.createDoubleBinding(
-                () -> calculateXInPane(state.getPosition())
-                , mapParameters.getZoomProperty(), mapParameters.getMinXProperty(), state.positionProperty()
-        ));
-        iconLabelGroup.layoutYProperty().bind(Bindings.createDoubleBinding(
-                () -> calculateYInPane(state.getPosition())
-                ,mapParameters.getZoomProperty() , mapParameters.getMinYProperty(), state.positionProperty()
-        ));
+        iconLabelGroup.setLayoutX(calculateXInPane(state.getPosition()));
+        iconLabelGroup.setLayoutY(calculateYInPane(state.getPosition()));
+        // with an index, the icon is shown once its aircraft is found near the visible part of the map
+        iconLabelGroup.setVisible(spatialIndex == null);
+        tracks.put(state, new Track(state, iconLabelGroup));
         Group aircraftGroup = new Group(trajectory(state), iconLabelGroup);
         aircraftGroup.setId(state.address().string());
         aircraftGroup.viewOrderProperty().bind(state.altitudeProperty().negate());
@@ -186,45 +244,203 @@ public final class AircraftController {
         }
         return state.address().string();
     }
-    private void constructAllTrajectoryLines(Group trajectoryGroup, ObservableList<AirbornePos> trajectory){
-        List<Node> groupChildren = trajectoryGroup.getChildren();
-        groupChildren.clear();
-        AirbornePos prev = null;
-        for(AirbornePos pos : trajectory){
-            if(prev!=null) {
-                Line line = lineFromTwoAirbornePos(prev, pos);
-                groupChildren.add(line);
-            }
-            prev = pos;
+    private void constructAllTrajectoryLines(Group trajectoryGroup, Trajectory trajectory){
+        ObservableList<Node> groupChildren = trajectoryGroup.getChildren();
+        List<Node> lines = new ArrayList<>(Math.max(trajectory.size() - 1, 0));
+        for(int i = 1; i < trajectory.size(); ++i){
+            lines.add(lineBetweenPoints(trajectory, i - 1, i));
         }
+        groupChildren.setAll(lines);
     }
-    private Line lineFromTwoAirbornePos(AirbornePos first, AirbornePos second){
-        double xFirst = calculateXInPane(first.position()),
-                xSecond = calculateXInPane(second.position()),
-                yFirst = calculateYInPane(first.position()),
-                ySeconde = calculateYInPane(second.position());
-        Line line = new Line(LINE_START, LINE_START, xSecond-xFirst, ySeconde-yFirst);
-        if(first.altitude()== second.altitude()) line.setStroke(ColorFromAltitude(first.altitude()));
+    private Line lineBetweenPoints(Trajectory trajectory, int first, int second){
+        double firstAltitude = trajectory.altitude(first), secondAltitude = trajectory.altitude(second);
+        Line line = new Line();
+        if(firstAltitude == secondAltitude) line.setStroke(ColorFromAltitude(firstAltitude));
         else {
-            Stop s1 = new Stop(STOP_OFFSET_FIRST, ColorFromAltitude(first.altitude()));
-            Stop s2 = new Stop(STOP_OFFSET_SECOND, ColorFromAltitude(second.altitude()));
+            Stop s1 = new Stop(STOP_OFFSET_FIRST, ColorFromAltitude(firstAltitude));
+            Stop s2 = new Stop(STOP_OFFSET_SECOND, ColorFromAltitude(secondAltitude));
             line.setStroke(new LinearGradient(GRADIENT_START_X, GRADIENT_START_Y, GRADIENT_END_X, GRADIENT_END_Y, true, NO_CYCLE, s1, s2));
         }
         line.setStrokeWidth(DEFAULT_LINE_WIDTH);
         int zoom = mapParameters.getZoom();
-        line.setStartX( WebMercator.x(zoom, first.position().longitude()) );
-        line.setStartY( WebMercator.y(zoom, first.position().latitude()) );
-        line.setEndX( WebMercator.x(zoom, second.position().longitude()) );
-        line.setEndY( WebMercator.y(zoom, second.position().latitude()) );
+        line.setStartX( WebMercator.x(zoom, Units.convertFrom(trajectory.longitudeT32(first), Units.Angle.T32)) );
+        line.setStartY( WebMercator.y(zoom, Units.convertFrom(trajectory.latitudeT32(first), Units.Angle.T32)) );
+        line.setEndX( WebMercator.x(zoom, Units.convertFrom(trajectory.longitudeT32(second), Units.Angle.T32)) );
+        line.setEndY( WebMercator.y(zoom, Units.convertFrom(trajectory.latitudeT32(second), Units.Angle.T32)) );
         return line;
     }
     private void setUpListeners(){
         states.addListener( (SetChangeListener<ObservableAircraftState>) change -> {
             if(change.wasAdded())
                 pane.getChildren().add(group(change.getElementAdded()));
-            else if(change.wasRemoved()) removeGroupFromIcaoAddress(change.getElementRemoved().address());
+            else if(change.wasRemoved()) {
+                tracks.remove(change.getElementRemoved());
+                removeGroupFromIcaoAddress(change.getElementRemoved().address());
+            }
         });
     }
+
+    /**
+     * Moves every icon to the position its aircraft is expected to have at the given time, assuming it kept the
+     * velocity and track it had when its last position was received
+     * <p>
+     * The time elapsed since a position was received is measured with the time stamps of the messages, the time
+     * stamp of the current frame being estimated as the most recent time stamp received, plus the time elapsed
+     * since the frame at which it was received. The icons of the aircraft whose velocity is unknown are only
+     * moved when their position or the visible part of the map changes.
+     *
+     * @param nowNs (long) time of the current frame, in nanoseconds
+     */
+    private void extrapolatePositions(long nowNs) {
+        int zoom = mapParameters.getZoom();
+        double minX = mapParameters.getMinX(), minY = mapParameters.getMinY();
+        boolean viewChanged = zoom != shownZoom || minX != shownMinX || minY != shownMinY;
+        shownZoom = zoom;
+        shownMinX = minX;
+        shownMinY = minY;
+        // until a time stamp was received, the positions are not extrapolated
+        long nowTimeStampNs = clockTimeStampNs == Long.MIN_VALUE ? Long.MIN_VALUE
+                : clockTimeStampNs + (nowNs - clockFrameNs);
+        newestTimeStampNs = clockTimeStampNs;
+        if (spatialIndex == null) {
+            for (Track track : tracks.values()) place(track, zoom, minX, minY, viewChanged, nowTimeStampNs);
+        } else {
+            extrapolateVisiblePositions(zoom, minX, minY, viewChanged, nowTimeStampNs);
+        }
+        if (newestTimeStampNs > clockTimeStampNs) {
+            clockTimeStampNs = newestTimeStampNs;
+            clockFrameNs = nowNs;
+        }
+    }
+
+    /**
+     * Moves the icons of the aircraft the spatial index finds near the visible part of the map, as in
+     * extrapolatePositions, shows them if they were hidden, and hides the ones which were shown at the previous
+     * frame but are no longer near the visible part of the map
+     *
+     * @param zoom           (int) zoom level of the map
+     * @param minX           (double) x coordinate of the top left corner of the visible part of the map
+     * @param minY           (double) y coordinate of the top left corner of the visible part of the map
+     * @param viewChanged    (boolean) true iff the visible part of the map changed since the previous frame
+     * @param nowTimeStampNs (long) estimated time stamp of the current frame, or Long.MIN_VALUE if it is unknown
+     */
+    private void extrapolateVisiblePositions(int zoom, double minX, double minY, boolean viewChanged,
+                                             long nowTimeStampNs) {
+        ++frame;
+        double marginAngle = CULLING_MARGIN_METERS / GeoPos.EARTH_RADIUS;
+        double west = WebMercator.longitude(zoom, minX - CULLING_MARGIN_PIXELS);
+        double east = WebMercator.longitude(zoom, minX + pane.getWidth() + CULLING_MARGIN_PIXELS);
+        double north = WebMercator.latitude(zoom, minY - CULLING_MARGIN_PIXELS) + marginAngle;
+        double south = WebMercator.latitude(zoom, minY + pane.getHeight() + CULLING_MARGIN_PIXELS) - marginAngle;
+        // the margin spans more longitudes far from the equator, and all of them near the poles
+        double cosLatitude = Math.cos(Math.min(Units.Angle.TURN / 4, Math.max(Math.abs(north), Math.abs(south))));
+        double longitudeMargin = marginAngle / cosLatitude;
+        int minLongitudeT32 = Integer.MIN_VALUE, maxLongitudeT32 = Integer.MAX_VALUE;
+        if (east - west + 2 * longitudeMargin < Units.Angle.TURN) {
+            minLongitudeT32 = longitudeT32(west - longitudeMargin);
+            maxLongitudeT32 = longitudeT32(east + longitudeMargin);
+        }
+        int minLatitudeT32 = latitudeT32(south), maxLatitudeT32 = latitudeT32(north);
+
+        spatialIndex.forEachWithin(minLongitudeT32, maxLongitudeT32, minLatitudeT32, maxLatitudeT32, state -> {
+            Track track = tracks.get(state);
+            if (track == null) return;
+            boolean newlyShown = !track.shown;
+            track.shown = true;
+            track.shownFrame = frame;
+            shownTracks.add(track);
+            place(track, zoom, minX, minY, viewChanged || newlyShown, nowTimeStampNs);
+            if (newlyShown) track.iconLabelGroup.setVisible(true);
+        });
+        for (Track track : previouslyShownTracks) {
+            if (track.shownFrame != frame) {
+                track.shown = false;
+                track.iconLabelGroup.setVisible(false);
+            }
+        }
+        List<Track> tracksToClear = previouslyShownTracks;
+        previouslyShownTracks = shownTracks;
+        shownTracks = tracksToClear;
+        shownTracks.clear();
+    }
+
+    /**
+     * Moves the icon of the given aircraft to the position it is expected to have at the given time
+     *
+     * @param track          (Track)
+     * @param zoom           (int) zoom level of the map
+     * @param minX           (double) x coordinate of the top left corner of the visible part of the map
+     * @param minY           (double) y coordinate of the top left corner of the visible part of the map
+     * @param force          (boolean) true iff the icon must be moved even if its aircraft has no velocity and
+     *                       its position did not change
+     * @param nowTimeStampNs (long) estimated time stamp of the current frame, or Long.MIN_VALUE if it is unknown
+     */
+    private void place(Track track, int zoom, double minX, double minY, boolean force, long nowTimeStampNs) {
+        ObservableAircraftState state = track.state;
+        newestTimeStampNs = Math.max(newestTimeStampNs, state.getLastMessageTimeStampNs());
+        GeoPos position = state.getPosition();
+        boolean fixChanged = position != track.fix;
+        if (fixChanged) {
+            track.fix = position;
+            track.fixTimeStampNs = timeStampOf(state, position);
+        }
+        // the velocity is NaN as long as no velocity message was received
+        double velocity = state.getVelocity();
+        if (Double.isNaN(velocity) && !fixChanged && !force) return;
+
+        double longitude = position.longitude(), latitude = position.latitude();
+        long elapsedTimeNs = nowTimeStampNs == Long.MIN_VALUE ? 0
+                : Math.max(0, Math.min(nowTimeStampNs - track.fixTimeStampNs, MAX_EXTRAPOLATION_NS));
+        double elapsedTime = elapsedTimeNs / NANOSECONDS_PER_SECOND;
+        double distance = velocity * elapsedTime;
+        if (distance > 0) {
+            // destination along the great circle starting at the position with the given track
+            double angularDistance = distance / GeoPos.EARTH_RADIUS;
+            double direction = state.getTrackOrHeading();
+            double sinLatitude = Math.sin(latitude), cosLatitude = Math.cos(latitude);
+            double sinDistance = Math.sin(angularDistance), cosDistance = Math.cos(angularDistance);
+            double sinNewLatitude = sinLatitude * cosDistance + cosLatitude * sinDistance * Math.cos(direction);
+            latitude = Math.asin(sinNewLatitude);
+            longitude = Math.IEEEremainder(longitude + Math.atan2(Math.sin(direction) * sinDistance * cosLatitude,
+                    cosDistance - sinLatitude * sinNewLatitude), Units.Angle.TURN);
+        }
+        track.iconLabelGroup.setLayoutX(WebMercator.x(zoom, longitude) - minX);
+        track.iconLabelGroup.setLayoutY(WebMercator.y(zoom, latitude) - minY);
+    }
+
+    /**
+     * @param longitude (double) longitude in radians, possibly outside of [-pi, pi[
+     * @return (int) the given longitude in T32, wrapped around the antimeridian
+     */
+    private static int longitudeT32(double longitude) {
+        return (int) (long) Math.rint(Units.convertTo(Math.IEEEremainder(longitude, Units.Angle.TURN),
+                Units.Angle.T32));
+    }
+
+    /**
+     * @param latitude (double) latitude in radians
+     * @return (int) the given latitude in T32, clamped to the valid latitudes
+     */
+    private static int latitudeT32(double latitude) {
+        double latitudeT32 = Units.convertTo(latitude, Units.Angle.T32);
+        return (int) Math.max(MIN_LATITUDE_T32, Math.min(MAX_LATITUDE_T32, Math.rint(latitudeT32)));
+    }
+
+    /**
+     * @param state    (ObservableAircraftState)
+     * @param position (GeoPos) the current position of the aircraft
+     * @return (long) the time stamp of the message that carried the position, which is the one of the last point
+     * of the trajectory if it is at that position, or else the one of the last message of the aircraft
+     */
+    private static long timeStampOf(ObservableAircraftState state, GeoPos position) {
+        Trajectory trajectory = state.getTrajectory();
+        int last = trajectory.size() - 1;
+        if (last >= 0 && trajectory.longitudeT32(last) == position.longitudeT32()
+                && trajectory.latitudeT32(last) == position.latitudeT32()) {
+            return trajectory.timeStampNs(last);
+        }
+        return state.getLastMessageTimeStampNs();
+    }
     private void removeGroupFromIcaoAddress(IcaoAddress icaoAddress){
         Node groupToRemove = pane.lookup("#"+icaoAddress.string());
         pane.getChildren().remove(groupToRemove);
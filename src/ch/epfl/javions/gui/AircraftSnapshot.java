@@ -0,0 +1,36 @@
+package ch.epfl.javions.gui;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.adsb.CallSign;
+import ch.epfl.javions.adsb.Trajectory;
+import ch.epfl.javions.aircraft.AircraftData;
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+/**
+ * This record represents the state of an aircraft, as published by the state engine at a given instant
+ * <p>
+ * The trajectory itself is not part of a snapshot, which only contains its tail starting at the last point of the
+ * last snapshot of the same aircraft that was taken by the reader, so that the reader replaces the tail of its own
+ * trajectory with it.
+ * <p>
+ * The changes of a snapshot tell which of its fields may differ from the ones of the last snapshot of the same
+ * aircraft that was taken by the reader, all the messages received in between being merged into this snapshot.
+ *
+ * @param address                (IcaoAddress) the ICAO address of the aircraft
+ * @param aircraftData           (AircraftData) the data of the aircraft, or null if it is unknown
+ * @param lastMessageTimeStampNs (long) the time stamp of the last message of the aircraft
+ * @param category               (int) the category of the aircraft
+ * @param callSign               (CallSign) the call sign of the aircraft, or null if it is unknown
+ * @param position               (GeoPos) the position of the aircraft
+ * @param altitude               (double) the altitude of the aircraft, or NaN if it is unknown
+ * @param velocity               (double) the velocity of the aircraft, or NaN if it is unknown
+ * @param trackOrHeading         (double) the track or heading of the aircraft
+ * @param trajectoryTail         (Trajectory) the tail of the trajectory, which must not be modified
+ * @param changes                (int) bits of the fields that changed, among the constants of AircraftState
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+record AircraftSnapshot(IcaoAddress address, AircraftData aircraftData, long lastMessageTimeStampNs, int category,
+                        CallSign callSign, GeoPos position, double altitude, double velocity, double trackOrHeading,
+                        Trajectory trajectoryTail, int changes) {
+}
@@ -0,0 +1,463 @@
+package ch.epfl.javions.gui;
+
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.adsb.AirbornePositionMessage;
+import ch.epfl.javions.adsb.AircraftHistory;
+import ch.epfl.javions.adsb.AircraftState;
+import ch.epfl.javions.adsb.AircraftStateSetter;
+import ch.epfl.javions.adsb.AircraftStateTable;
+import ch.epfl.javions.adsb.CallSign;
+import ch.epfl.javions.adsb.Message;
+import ch.epfl.javions.adsb.Trajectory;
+import ch.epfl.javions.aircraft.AircraftData;
+import ch.epfl.javions.aircraft.AircraftDatabase;
+import ch.epfl.javions.aircraft.IcaoAddress;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents the engine accumulating the messages into the states of the aircraft, on its own thread
+ * <p>
+ * The engine thread is the only one to access the states, so that neither the decoding of the positions nor the
+ * lookups in the aircraft database are done on the JavaFX thread. At a fixed rate, the engine purges the aircraft
+ * whose last message is older than the timeout, then publishes an immutable frame containing the changes made
+ * since the last frame taken by the reader: a snapshot of every aircraft having a position whose state changed,
+ * and the addresses of the aircraft purged. Only the aircraft that received a message since the previous frame are
+ * visited, so that neither the engine nor the reader does any work for the aircraft that did not change. A frame
+ * is taken by a single reader, which only ever gets the latest one, whatever the rate of the incoming messages:
+ * when a frame is replaced before being taken, its changes are merged into the ones of the next frame, so that
+ * the reader can apply each changed field once, and only the changed fields.
+ * <p>
+ * The states are the plain AircraftState instances also used without any user interface. A snapshot carries the
+ * tail of the trajectory starting at the last point seen by the reader, which mirrors the trajectory of the engine.
+ * <p>
+ * If the engine is given a state file, it restores the aircraft saved to it before applying any message, and
+ * publishes them at once, then saves them again periodically and once more when it is stopped. The engine thread
+ * only serializes the aircraft in memory: the file is written by a separate saver thread, so that a slow disk
+ * does not delay the messages, and an image that could not be written yet is replaced by the next one. If the
+ * engine is given a history, every position message received from a positioned aircraft appends a row to it.
+ * <p>
+ * The messages wait for the engine thread in a queue holding at most MESSAGE_QUEUE_CAPACITY of them: a message
+ * handed over while the queue is full is dropped and counted, so that a source faster than the engine never
+ * exhausts the memory nor blocks its own thread.
+ * <p>
+ * An unexpected exception thrown while handling a message or publishing a frame, and any exception thrown while
+ * restoring, serializing or writing the aircraft, including an I/O exception, only loses the step that failed: it
+ * is recorded, and the engine thread goes on.
+ *
+ * @author: Bouden Omar (341381)
+ * @author: Tlili Ahmed (344939)
+ */
+final class AircraftStateEngine {
+    private final AircraftDatabase aircraftDatabase;
+    private final long publicationPeriodNs;
+    private final int trajectoryCapacity;
+    private final Path stateFile;
+    private final long savePeriodNs;
+    private final AircraftHistory history;
+    private final BlockingQueue<Message> messages;
+    private final AircraftStateTable<Tracked> states;
+    private final Thread thread;
+    private final Thread saver;
+    private final BlockingQueue<byte[]> images;
+    private long messageCount;
+    private final LongAdder droppedMessageCount;
+    private volatile long failureCount;
+    private volatile RuntimeException lastFailure;
+    private volatile GeoPos receiverPosition;
+    private final AtomicReference<Frame> pendingFrame;
+    private final List<Tracked> changedAircraft, pendingAircraft;
+    private final List<IcaoAddress> pendingRemovedAircraft;
+    private static final byte[] STOP_SAVING = new byte[0];
+    // many seconds of the messages received from the busiest sky, which the engine handles in a fraction of a second
+    private static final int MESSAGE_QUEUE_CAPACITY = 1 << 16;
+
+    /**
+     * A frame published by the engine, containing the changes made since the last frame taken by the reader
+     *
+     * @param messageCount    (long) number of messages received by the engine when the frame was published
+     * @param changedAircraft (List<AircraftSnapshot>) snapshots of the aircraft having a position whose state changed
+     * @param removedAircraft (List<IcaoAddress>) addresses of the aircraft purged, which must be removed before the
+     *                        changed aircraft are applied, since an aircraft can be purged then tracked again
+     */
+    record Frame(long messageCount, List<AircraftSnapshot> changedAircraft, List<IcaoAddress> removedAircraft) {
+    }
+
+    /**
+     * The state of an aircraft, with what the reader has seen of it: its setters only delegate to the plain state
+     */
+    private static final class Tracked implements AircraftStateSetter {
+        private final AircraftState state;
+        private AircraftSnapshot lastSnapshot;
+        private int pendingChanges;
+        private long takenPointCount, publishedPointCount;
+        private boolean changed, pending, removed;
+
+        private Tracked(AircraftState state) {
+            this.state = state;
+        }
+
+        @Override
+        public void setLastMessageTimeStampNs(long timeStampNs) {
+            state.setLastMessageTimeStampNs(timeStampNs);
+        }
+
+        @Override
+        public void setCategory(int category) {
+            state.setCategory(category);
+        }
+
+        @Override
+        public void setCallSign(CallSign callSign) {
+            state.setCallSign(callSign);
+        }
+
+        @Override
+        public void setPosition(GeoPos position) {
+            state.setPosition(position);
+        }
+
+        @Override
+        public void setAltitude(double altitude) {
+            state.setAltitude(altitude);
+        }
+
+        @Override
+        public void setVelocity(double velocity) {
+            state.setVelocity(velocity);
+        }
+
+        @Override
+        public void setTrackOrHeading(double trackOrHeading) {
+            state.setTrackOrHeading(trackOrHeading);
+        }
+
+        /**
+         * @param changes        (int) bits of the fields that changed since the last snapshot taken by the reader
+         * @param trajectoryTail (Trajectory) points of the trajectory that changed since then
+         * @return (AircraftSnapshot) the snapshot of the current state
+         */
+        private AircraftSnapshot snapshot(int changes, Trajectory trajectoryTail) {
+            return new AircraftSnapshot(state.address(), state.getAircraftData(), state.getLastMessageTimeStampNs(),
+                    state.getCategory(), state.getCallSign(), state.getPosition(), state.getAltitude(),
+                    state.getVelocity(), state.getTrackOrHeading(), trajectoryTail, changes);
+        }
+    }
+
+    /**
+     * AircraftStateEngine constructor
+     * Returns an engine whose thread is started
+     *
+     * @param aircraftDatabase    (AircraftDatabase) The database to retrieve aircraft information from
+     * @param timeoutNs           (long) The time in nanoseconds after its last message from which an aircraft is purged
+     * @param publicationPeriodNs (long) The time in nanoseconds between two publications of a frame
+     * @param trajectoryCapacity  (int) The maximum number of points of the trajectory of an aircraft
+     * @param stateFile           (Path) The file the aircraft are restored from and saved to, or null if they are
+     *                            not saved
+     * @param savePeriodNs        (long) The time in nanoseconds between two saves of the aircraft
+     * @param history             (AircraftHistory) The history of the updates, or null if they are not kept
+     * @throws IllegalArgumentException if the timeout is negative, one of the periods is not strictly positive or
+     *                                  the capacity is smaller than 2
+     */
+    AircraftStateEngine(AircraftDatabase aircraftDatabase, long timeoutNs, long publicationPeriodNs,
+                        int trajectoryCapacity, Path stateFile, long savePeriodNs, AircraftHistory history) {
+        Preconditions.checkArgument(timeoutNs >= 0 && publicationPeriodNs > 0 && trajectoryCapacity >= 2
+                && savePeriodNs > 0);
+        this.aircraftDatabase = Objects.requireNonNull(aircraftDatabase);
+        this.publicationPeriodNs = publicationPeriodNs;
+        this.trajectoryCapacity = trajectoryCapacity;
+        this.stateFile = stateFile;
+        this.savePeriodNs = savePeriodNs;
+        this.history = history;
+        messages = new LinkedBlockingQueue<>(MESSAGE_QUEUE_CAPACITY);
+        droppedMessageCount = new LongAdder();
+        states = new AircraftStateTable<>(timeoutNs, address -> new Tracked(new AircraftState(address, aircraftData(address), trajectoryCapacity)));
+        pendingFrame = new AtomicReference<>();
+        changedAircraft = new ArrayList<>();
+        pendingAircraft = new ArrayList<>();
+        pendingRemovedAircraft = new ArrayList<>();
+        images = new LinkedBlockingQueue<>();
+        if (stateFile != null) {
+            saver = new Thread(this::runSaver, "aircraft-state-saver");
+            saver.setDaemon(true);
+            saver.start();
+        } else {
+            saver = null;
+        }
+        thread = new Thread(this::run, "aircraft-state-engine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hands a message over to the engine, or drops it if the engine has too many messages waiting already.
+     * Can be called from any thread
+     *
+     * @param message (Message)
+     */
+    void offer(Message message) {
+        if (!messages.offer(Objects.requireNonNull(message))) droppedMessageCount.increment();
+    }
+
+    /**
+     * Sets the position of the receiver, used to decode the first positions of the aircraft.
+     * Can be called from any thread
+     *
+     * @param receiverPosition (GeoPos) the position of the receiver, or null if it is unknown
+     */
+    void setReceiverPosition(GeoPos receiverPosition) {
+        this.receiverPosition = receiverPosition;
+    }
+
+    /**
+     * @return (Frame) the latest frame published by the engine, or null if it has not published any frame
+     * since the previous call. Must always be called by the same reader
+     */
+    Frame takeFrame() {
+        return pendingFrame.getAndSet(null);
+    }
+
+    /**
+     * @return (long) the number of messages dropped because the queue of the engine was full.
+     * Can be called from any thread
+     */
+    long droppedMessageCount() {
+        return droppedMessageCount.sum();
+    }
+
+    /**
+     * @return (long) the number of messages, publications, restorations and saves that failed because of an
+     * unexpected or I/O exception, which the engine survived. Can be called from any thread
+     */
+    long failureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return (RuntimeException) the last exception the engine survived, an I/O exception being wrapped in an
+     * UncheckedIOException, or null if there was none. Can be called from any thread
+     */
+    RuntimeException lastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stops the engine thread, which saves the aircraft one last time if the engine has a state file, and waits
+     * until that save is written. If the calling thread is interrupted while waiting, it returns at once with its
+     * interrupt status set
+     */
+    void stop() {
+        thread.interrupt();
+        try {
+            thread.join();
+            if (saver != null) saver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Body of the engine thread: accumulates the messages, and publishes a frame at the end of each period
+     */
+    private void run() {
+        restoreStates();
+        try {
+            // the restored aircraft are published at once
+            long nextPublication = System.nanoTime();
+            long nextSave = nextPublication + savePeriodNs;
+            while (true) {
+                long waitingTime = nextPublication - System.nanoTime();
+                Message message = waitingTime > 0 ? messages.poll(waitingTime, TimeUnit.NANOSECONDS) : null;
+                if (message != null) {
+                    ++messageCount;
+                    try {
+                        Tracked tracked = states.update(message, receiverPosition);
+                        markChanged(tracked);
+                        AircraftState state = tracked.state;
+                        if (history != null && message instanceof AirbornePositionMessage
+                                && state.getPosition() != null) {
+                            history.append(message.timeStampNs(), state);
+                        }
+                    } catch (RuntimeException e) {
+                        recordFailure(e);
+                    }
+                    continue;
+                }
+                try {
+                    publish();
+                } catch (RuntimeException e) {
+                    recordFailure(e);
+                }
+                if (stateFile != null && System.nanoTime() - nextSave >= 0) {
+                    saveStates();
+                    nextSave = System.nanoTime() + savePeriodNs;
+                }
+                nextPublication = Math.max(nextPublication + publicationPeriodNs, System.nanoTime());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (stateFile != null) {
+            saveStates();
+            images.add(STOP_SAVING);
+        }
+    }
+
+    /**
+     * Body of the saver thread: writes the images of the aircraft handed over by the engine thread to the state
+     * file, until the engine stops
+     */
+    private void runSaver() {
+        try {
+            for (byte[] image = images.take(); image != STOP_SAVING; image = images.take()) {
+                try {
+                    AircraftStateTable.writeImage(stateFile, image);
+                } catch (IOException e) {
+                    recordFailure(new UncheckedIOException(e));
+                } catch (RuntimeException e) {
+                    recordFailure(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records an exception thrown while handling a message, publishing a frame, restoring or saving the aircraft:
+     * only the step that failed is lost, and the engine goes on with the next one
+     *
+     * @param e (RuntimeException)
+     */
+    private synchronized void recordFailure(RuntimeException e) {
+        lastFailure = e;
+        ++failureCount;
+    }
+
+    /**
+     * Restores the aircraft saved to the state file, if any. The engine starts without any aircraft if the file
+     * does not exist, or if it cannot be read, which is recorded as a failure
+     */
+    private void restoreStates() {
+        if (stateFile == null || !Files.exists(stateFile)) return;
+        try {
+            states.restore(stateFile, (address, in, timeShiftNs) ->
+                    new Tracked(AircraftState.readFrom(address, in, timeShiftNs, trajectoryCapacity)));
+            states.forEach(this::markChanged);
+        } catch (IOException e) {
+            recordFailure(new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            recordFailure(e);
+        }
+    }
+
+    /**
+     * Serializes the aircraft and hands the image over to the saver thread, replacing the previous image if it has
+     * not been written yet. A failed save is recorded and leaves the previous file unchanged, and the next save is
+     * attempted at the next period
+     */
+    private void saveStates() {
+        try {
+            byte[] image = states.image((tracked, out) -> tracked.state.writeTo(out));
+            images.clear();
+            images.add(image);
+        } catch (IOException e) {
+            recordFailure(new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            recordFailure(e);
+        }
+    }
+
+    /**
+     * @param icaoAddress (IcaoAddress)
+     * @return (AircraftData) the data of the aircraft with the given address, or null if it is unknown
+     * or if the database could not be read
+     */
+    private AircraftData aircraftData(IcaoAddress icaoAddress) {
+        try {
+            return aircraftDatabase.get(icaoAddress);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records that the state of the given aircraft may have changed, so that it is visited by the next publication
+     *
+     * @param tracked (Tracked)
+     */
+    private void markChanged(Tracked tracked) {
+        if (tracked.changed) return;
+        tracked.changed = true;
+        changedAircraft.add(tracked);
+    }
+
+    /**
+     * Records that the given aircraft has been purged, so that the reader removes it if it has seen it
+     *
+     * @param tracked (Tracked)
+     */
+    private void markRemoved(Tracked tracked) {
+        tracked.removed = true;
+        if (tracked.lastSnapshot != null) pendingRemovedAircraft.add(tracked.state.address());
+    }
+
+    /**
+     * Purges the aircraft whose last message is older than the timeout, then publishes a frame containing the
+     * snapshots of the aircraft having a position whose state changed and the addresses of the aircraft purged since
+     * the last frame taken by the reader, replacing the previous frame if it has not been taken
+     */
+    private void publish() {
+        // the previous frame is withdrawn, so that it is either taken before this test or never: the tails of the
+        // trajectories must start at the last point actually seen by the reader
+        boolean previousTaken = pendingFrame.getAndSet(null) == null;
+        if (previousTaken) {
+            for (Tracked tracked : pendingAircraft) {
+                tracked.pending = false;
+                tracked.pendingChanges = 0;
+                tracked.takenPointCount = tracked.publishedPointCount;
+            }
+            pendingAircraft.clear();
+            pendingRemovedAircraft.clear();
+        }
+        states.purge(this::markRemoved);
+
+        for (Tracked tracked : changedAircraft) {
+            tracked.changed = false;
+            AircraftState state = tracked.state;
+            if (tracked.removed || state.getPosition() == null) continue;
+            if (state.changes() != 0 || tracked.lastSnapshot == null) {
+                tracked.pendingChanges |= state.changes();
+                // the last point seen by the reader is part of the tail, since it may have been moved since then
+                Trajectory trajectory = state.getTrajectory();
+                tracked.lastSnapshot = tracked.snapshot(tracked.pendingChanges,
+                        trajectory.tail(tracked.takenPointCount - 1));
+                tracked.publishedPointCount = trajectory.pointCount();
+                state.clearChanges();
+                if (!tracked.pending) {
+                    tracked.pending = true;
+                    pendingAircraft.add(tracked);
+                }
+            }
+        }
+        changedAircraft.clear();
+
+        List<AircraftSnapshot> aircraft = new ArrayList<>(pendingAircraft.size());
+        for (Tracked tracked : pendingAircraft) {
+            if (!tracked.removed) aircraft.add(tracked.lastSnapshot);
+        }
+        pendingFrame.set(new Frame(messageCount, List.copyOf(aircraft), List.copyOf(pendingRemovedAircraft)));
+    }
+}
@@ -1,49 +1,116 @@
 package ch.epfl.javions.gui;
 
-import ch.epfl.javions.adsb.AircraftStateAccumulator;
+import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.Preconditions;
+import ch.epfl.javions.adsb.AircraftHistory;
+import ch.epfl.javions.adsb.AircraftState;
 import ch.epfl.javions.adsb.Message;
-import ch.epfl.javions.aircraft.AircraftData;
+import ch.epfl.javions.adsb.Trajectory;
 import ch.epfl.javions.aircraft.AircraftDatabase;
 import ch.epfl.javions.aircraft.IcaoAddress;
+import ch.epfl.javions.aircraft.IcaoAddressMap;
+import ch.epfl.javions.aircraft.SpatialIndex;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Path;
 
 /**
  * This class represents a managing system responsible for the creation, storing, and updating of aircraft states.
- * It maintains a map of all known aircraft states, where the key is the ICAO address of the aircraft, and the value is
- * an AircraftStateAccumulator instance, which accumulates messages to create an ObservableAircraftState instance.
  * <p>
- * This class also has a purge method that removes any state with last properties dating more than a minute from the current
- * message time.
+ * The messages are accumulated by an AircraftStateEngine, on its own thread, which also purges any aircraft,
+ * positioned or not, whose last message dates more than a given timeout (a minute by default) from the current
+ * message time. On the JavaFX thread, this class only applies the latest frame published by the engine to the
+ * ObservableAircraftState instances: all the messages received by an aircraft between two pulses are merged, and
+ * each of its changed properties is set once, so that the work done per pulse does not depend on the message rate.
+ * <p>
+ * The observable states are also indexed by their position, the index being updated with the positions applied,
+ * so that the aircraft near a point or in an area can be found without visiting all of them.
  *
  * @author: Tlili Ahmed (344939)
  * @author: Bouden Omar (341381)
  */
 public final class AircraftStateManager {
     private static final long MINUTE_IN_NANOSECONDE = 60_000_000_000L;
-    private final AircraftDatabase aircraftDatabase;
-    private final Map<IcaoAddress, AircraftStateAccumulator<ObservableAircraftState>> aircraftStateMap;
+    private static final long PUBLICATION_PERIOD_NS = 1_000_000_000L / 60;
+    private static final long SAVE_PERIOD_NS = 10_000_000_000L;
+    private final AircraftStateEngine engine;
+    private final int trajectoryCapacity;
+    private final IcaoAddressMap<ObservableAircraftState> aircraftStateMap;
     private final ObservableSet<ObservableAircraftState> observableAircraftStates;
     private final ObservableSet<ObservableAircraftState> unmodifiableObservableAircraftStates;
-    private long lastTimeStamp;
+    private final SpatialIndex<ObservableAircraftState> spatialIndex;
+    private final AircraftHistory history;
+    private long messageCount;
 
     /**
-     * The constructor initializes an instance of the class with an aircraft database, which is used to retrieve
-     * information about the aircraft such as their type designator, registration, and description. It also creates
-     * an empty hashmap to store the aircraft state accumulators, an observable set to store the observable aircraft states,
-     * and an unmodifiable version of the observable set.
+     * The constructor initializes an instance of the class with an aircraft database, which is used by the engine
+     * to retrieve information about the aircraft such as their type designator, registration, and description.
+     * It also starts the engine, and creates an observable set to store the observable aircraft states,
+     * and an unmodifiable version of the observable set. Aircraft are purged a minute after their last message.
      @param aircraftDatabase (AircraftDatabase) The database to retrieve aircraft information from.
      */
     public AircraftStateManager(AircraftDatabase aircraftDatabase) {
-        this.aircraftDatabase = aircraftDatabase;
-        this.aircraftStateMap = new HashMap<>();
+        this(aircraftDatabase, MINUTE_IN_NANOSECONDE);
+    }
+
+    /**
+     * Same as the previous constructor, with a given delay after which aircraft are purged.
+     @param aircraftDatabase (AircraftDatabase) The database to retrieve aircraft information from.
+     @param timeoutNs (long) The time in nanoseconds after its last message from which an aircraft is purged.
+     @throws IllegalArgumentException if the timeout is negative.
+     */
+    public AircraftStateManager(AircraftDatabase aircraftDatabase, long timeoutNs) {
+        this(aircraftDatabase, timeoutNs, Trajectory.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Same as the previous constructor, with a given maximum number of points of the trajectories.
+     @param aircraftDatabase (AircraftDatabase) The database to retrieve aircraft information from.
+     @param timeoutNs (long) The time in nanoseconds after its last message from which an aircraft is purged.
+     @param trajectoryCapacity (int) The maximum number of points of the trajectory of an aircraft.
+     @throws IllegalArgumentException if the timeout is negative or if the capacity is smaller than 2.
+     */
+    public AircraftStateManager(AircraftDatabase aircraftDatabase, long timeoutNs, int trajectoryCapacity) {
+        this(aircraftDatabase, timeoutNs, trajectoryCapacity, null);
+    }
+
+    /**
+     * Same as the previous constructor, with a file the aircraft are saved to every ten seconds by the engine, and
+     * restored from when it starts, except the ones that would have been purged since. The file is written next to
+     * it then atomically renamed, so that it is never partially written.
+     @param aircraftDatabase (AircraftDatabase) The database to retrieve aircraft information from.
+     @param timeoutNs (long) The time in nanoseconds after its last message from which an aircraft is purged.
+     @param trajectoryCapacity (int) The maximum number of points of the trajectory of an aircraft.
+     @param stateFile (Path) The file the aircraft are saved to, or null if they are not saved.
+     @throws IllegalArgumentException if the timeout is negative or if the capacity is smaller than 2.
+     */
+    public AircraftStateManager(AircraftDatabase aircraftDatabase, long timeoutNs, int trajectoryCapacity,
+                                Path stateFile) {
+        this(aircraftDatabase, timeoutNs, trajectoryCapacity, stateFile, null);
+    }
+
+    /**
+     * Same as the previous constructor, with a history the engine appends a row to for every position message
+     * of a positioned aircraft, which can be queried from any thread, even once the aircraft is purged.
+     @param aircraftDatabase (AircraftDatabase) The database to retrieve aircraft information from.
+     @param timeoutNs (long) The time in nanoseconds after its last message from which an aircraft is purged.
+     @param trajectoryCapacity (int) The maximum number of points of the trajectory of an aircraft.
+     @param stateFile (Path) The file the aircraft are saved to, or null if they are not saved.
+     @param history (AircraftHistory) The history of the updates, or null if they are not kept.
+     @throws IllegalArgumentException if the timeout is negative or if the capacity is smaller than 2.
+     */
+    public AircraftStateManager(AircraftDatabase aircraftDatabase, long timeoutNs, int trajectoryCapacity,
+                                Path stateFile, AircraftHistory history) {
+        Preconditions.checkArgument(trajectoryCapacity >= 2);
+        this.trajectoryCapacity = trajectoryCapacity;
+        this.engine = new AircraftStateEngine(aircraftDatabase, timeoutNs, PUBLICATION_PERIOD_NS, trajectoryCapacity,
+                stateFile, SAVE_PERIOD_NS, history);
+        this.aircraftStateMap = new IcaoAddressMap<>();
         this.observableAircraftStates = FXCollections.observableSet();
         this.unmodifiableObservableAircraftStates = FXCollections.unmodifiableObservableSet(observableAircraftStates);
-        lastTimeStamp = 0;
+        this.spatialIndex = new SpatialIndex<>();
+        this.history = history;
     }
 
     /**
@@ -55,40 +122,113 @@ public final class AircraftStateManager {
 
 
     /**
-     * Updates the aircraftStateMap and observableAircraftStates with a given message.
-     * <p>
-     * If the ICAO address of the message is not in the aircraftStateMap, a new AircraftStateAccumulator instance is
-     * created, and the message is passed to it. If the AircraftStateAccumulator instance does not yet have a position
-     * set, then the observableAircraftStates set is updated with the new ObservableAircraftState.
+     * Hands the given message over to the engine, which will update the state of its sender, or drops it if the
+     * engine has too many messages waiting already. Can be called from any thread.
      @param message The message to update the state with.
      */
-    public void updateWithMessage(Message message) throws IOException {
-        lastTimeStamp = message.timeStampNs();
-        IcaoAddress icaoAddress = message.icaoAddress();
-        if(!aircraftStateMap.containsKey(icaoAddress)){
-            AircraftData aircraftData = aircraftDatabase.get(icaoAddress);
-            ObservableAircraftState observableAircraftState = new ObservableAircraftState(aircraftData, icaoAddress);
-            aircraftStateMap.put(icaoAddress, new AircraftStateAccumulator<>(observableAircraftState));
-        }
-        aircraftStateMap.get(icaoAddress).update(message);
-        if((aircraftStateMap.get(icaoAddress).stateSetter()).getPosition() != null)
-            observableAircraftStates.add(aircraftStateMap.get(icaoAddress).stateSetter());
+    public void updateWithMessage(Message message) {
+        engine.offer(message);
+    }
 
+    /**
+     * Sets the position of the receiver, which allows the engine to decode the position of an aircraft
+     * from its first position message, as long as it is within the range of the receiver.
+     * Can be called from any thread.
+     @param receiverPosition (GeoPos) The position of the receiver, or null if it is unknown.
+     */
+    public void setReceiverPosition(GeoPos receiverPosition) {
+        engine.setReceiverPosition(receiverPosition);
     }
 
     /**
-     * Removes any state with last properties dating more than a minute from the current message time.
+     * Updates the observable aircraft states with the latest frame published by the engine, if it has not been
+     * applied yet. The aircraft purged are removed from the observable set, the aircraft appearing for the first
+     * time are added to it, and only the changed properties of the other aircraft of the frame are set, so that the
+     * aircraft that did not change are not visited. Must be called on the JavaFX thread.
      */
-    public void purge(){
-        observableAircraftStates.removeIf(state -> {
+    public void update() {
+        AircraftStateEngine.Frame frame = engine.takeFrame();
+        if (frame == null) return;
+        messageCount = frame.messageCount();
 
-            boolean shouldRemove = (lastTimeStamp - state.getLastMessageTimeStampNs()) > MINUTE_IN_NANOSECONDE;
-            if (shouldRemove){
-                aircraftStateMap.remove(state.address());
-                return true;
+        for (IcaoAddress address : frame.removedAircraft()) {
+            ObservableAircraftState state = aircraftStateMap.remove(address.asInt());
+            if (state == null) continue;
+            observableAircraftStates.remove(state);
+            spatialIndex.remove(address);
+        }
+
+        for (AircraftSnapshot snapshot : frame.changedAircraft()) {
+            int key = snapshot.address().asInt();
+            ObservableAircraftState state = aircraftStateMap.get(key);
+            if (state == null) {
+                state = new ObservableAircraftState(snapshot.aircraftData(), snapshot.address(), trajectoryCapacity);
+                aircraftStateMap.put(key, state);
+                state.update(snapshot, AircraftState.ALL);
+                spatialIndex.put(snapshot.address(), snapshot.position(), state);
+                observableAircraftStates.add(state);
+            } else {
+                state.update(snapshot, snapshot.changes());
+                if ((snapshot.changes() & AircraftState.POSITION) != 0) {
+                    spatialIndex.put(snapshot.address(), snapshot.position(), state);
+                }
             }
-            return false;
+        }
+    }
+
+    /**
+     * @return (SpatialIndex<ObservableAircraftState>) the index of the aircraft by their position, as of the frame
+     * last applied, which must not be modified and must only be queried on the JavaFX thread.
+     */
+    public SpatialIndex<ObservableAircraftState> spatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * @return (AircraftHistory) the history the engine appends a row to for every position message, which can be
+     * queried from any thread, or null if the updates are not kept.
+     */
+    public AircraftHistory history() {
+        return history;
+    }
 
-        });
+    /**
+     * @return (long) the number of messages dropped because the engine had too many messages waiting already.
+     * Can be called from any thread.
+     */
+    public long droppedMessageCount() {
+        return engine.droppedMessageCount();
+    }
+
+    /**
+     * @return (long) the number of messages, publications, restorations and saves of the engine that failed because
+     * of an unexpected or I/O exception, which the engine survived. Can be called from any thread.
+     */
+    public long failureCount() {
+        return engine.failureCount();
+    }
+
+    /**
+     * @return (RuntimeException) the last exception the engine survived, an I/O exception being wrapped in an
+     * UncheckedIOException, or null if there was none. Can be called from any thread.
+     */
+    public RuntimeException lastFailure() {
+        return engine.lastFailure();
+    }
+
+    /**
+     * @return (long) the number of messages received by the engine when the frame last applied was published
+     */
+    public long messageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Stops the engine, which saves the aircraft one last time if the manager has a state file, and waits until
+     * that save is written. The messages handed over afterwards are ignored. If the calling thread is interrupted
+     * while waiting, it returns at once with its interrupt status set.
+     */
+    public void close() {
+        engine.stop();
     }
 }
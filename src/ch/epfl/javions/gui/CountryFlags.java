@@ -207,7 +207,7 @@ public enum CountryFlags {
 
 
     public static String fileNameOf(IcaoAddress icaoAddress){
-        var icao = Integer.parseInt(icaoAddress.string(), 16);
+        var icao = icaoAddress.asInt();
         for(CountryFlags flag : CountryFlags.values()){
             if(flag.fromHex<=icao && icao<=flag.toHex) return flag.fileName;
         }
@@ -2,10 +2,17 @@ package ch.epfl.javions.gui;
 
 import ch.epfl.javions.ByteString;
 import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.adsb.AircraftHistory;
+import ch.epfl.javions.adsb.DuplicateFrameFilter;
 import ch.epfl.javions.adsb.Message;
 import ch.epfl.javions.adsb.MessageParser;
+import ch.epfl.javions.adsb.ParallelMessageParser;
+import ch.epfl.javions.adsb.ParserStatistics;
 import ch.epfl.javions.adsb.RawMessage;
+import ch.epfl.javions.adsb.RawMessageFilter;
+import ch.epfl.javions.adsb.Trajectory;
 import ch.epfl.javions.aircraft.AircraftDatabase;
+import ch.epfl.javions.aircraft.IcaoAddress;
 import ch.epfl.javions.demodulation.AdsbDemodulator;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
@@ -29,28 +36,50 @@ import java.awt.*;
 import java.io.*;
 import java.net.URL;
 import java.nio.file.Path;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class Main extends Application {
     private static final int VBOX_DEFAULT_SPACING = 10;
-    private static final long SECONDE_TO_NANOSECONDE = 1_000_000_000L;
     private final static int DEFAULT_ZOOM = 8, DEFAULT_MIN_X = 33_530, DEFAULT_MIN_Y = 23_070;
     private final static double DEFAULT_APPLICATION_WIDTH = 800d, DEFAULT_APPLICATION_HEIGHT = 600d;
     private final static long MICROSECONDE_NANOSECONDE = 1_000_000;
-    private long lastTime = -1;
+    private final static int DUPLICATE_TABLE_CAPACITY = 1 << 12;
+    private final static long DUPLICATE_WINDOW_NS = 10_000_000L;
+    private final static int PARSE_BATCH_SIZE = 256;
+    private final static int PARSE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private final static int PARSE_BATCHES_IN_FLIGHT = 4 * PARSE_THREADS;
+    private final static long MINUTE_IN_NANOSECONDE = 60_000_000_000L;
+    private final static String STATE_FILE = "aircraft-states.bin";
+    private final static long HISTORY_RETENTION_NS = 60 * MINUTE_IN_NANOSECONDE;
+    private final static String REPLAY_SPEED_PARAMETER = "speed", DEFAULT_REPLAY_SPEED = "1";
+    private final static String TALKERS_PARAMETER = "talkers", DEFAULT_TALKERS = "0";
+    private final static String ICAO_ADDRESSES_PARAMETER = "icao", DOWN_LINK_FORMATS_PARAMETER = "df",
+            TYPE_CODES_PARAMETER = "tc", LIST_SEPARATOR = ",";
+    private final RawMessageFilter filter = new RawMessageFilter();
+    private final DuplicateFrameFilter duplicateFilter = new DuplicateFrameFilter(DUPLICATE_TABLE_CAPACITY, DUPLICATE_WINDOW_NS);
+    private AircraftStateManager asm;
+    private double replaySpeed;
+    private int talkerCount;
 
     public static void main(String[] args) {
         launch(args);
     }
     @Override
     public void start(Stage primaryStage) throws Exception {
+        configureFilter();
+        replaySpeed = replaySpeed();
+        talkerCount = talkerCount();
+        if (talkerCount > 0) ParserStatistics.setTalkersEnabled(true);
 
         // set up the database
         URL u = getClass().getResource("/aircraft.zip");
         assert u != null;
         Path path = Path.of(u.toURI());
         AircraftDatabase db = new AircraftDatabase(path.toString());
-        AircraftStateManager asm = new AircraftStateManager(db);
+        asm = new AircraftStateManager(db, MINUTE_IN_NANOSECONDE, Trajectory.DEFAULT_CAPACITY,
+                Path.of(STATE_FILE), new AircraftHistory(HISTORY_RETENTION_NS));
         StatusLineController slc = new StatusLineController();
 
         primaryStage.setScene(new Scene(setUpPaneAndGet(asm, slc)));
@@ -76,12 +105,10 @@ public class Main extends Application {
 
         primaryStage.show();
 
-        ConcurrentLinkedQueue<Message> queue = new ConcurrentLinkedQueue<>();
-
         Thread thread = new Thread( () -> {
             System.out.println(getParameters().getRaw());
-            if(getParameters().getRaw().size()!=0) readFromFile(queue);
-            else readFromSystem(queue);
+            if(getParameters().getUnnamed().size()!=0) readFromFile(asm);
+            else readFromSystem(asm);
 
         });
         thread.setDaemon(true);
@@ -91,71 +118,178 @@ public class Main extends Application {
         new AnimationTimer() {
             @Override
             public void handle(long now) {
+                asm.update();
+                slc.messageCountProperty().set(asm.messageCount());
+            }
+        }.start();
 
-                    while(!queue.isEmpty()) {
-                        try {
-                            asm.updateWithMessage(queue.poll());
-                        } catch (IOException e) {
-                            throw new UncheckedIOException(e);
-                        }
-                        slc.messageCountProperty().set(slc.messageCountProperty().get() + 1);
-                    }
-                    if (now - lastTime > SECONDE_TO_NANOSECONDE) {
-                        asm.purge();
-                        lastTime = now;
-                    }
 
 
-            }
-        }.start();
+    }
 
 
+    /**
+     * Saves the aircraft one last time, then prints the counters of the engine, of the filters and of the parser,
+     * so that the messages they dropped or rejected during the session can be checked, followed by the aircraft
+     * that sent the most messages if --talkers was given
+     */
+    @Override
+    public void stop() {
+        if (asm != null) {
+            asm.close();
+            System.out.println("engine.dropped = " + asm.droppedMessageCount());
+            System.out.println("engine.failures = " + asm.failureCount());
+        }
+        filter.counters().forEach((name, value) -> System.out.println(name + " = " + value));
+        duplicateFilter.counters().forEach((name, value) -> System.out.println(name + " = " + value));
+        ParserStatistics.counters().forEach((name, value) -> System.out.println(name + " = " + value));
+        ParserStatistics.topTalkers(talkerCount)
+                .forEach((address, value) -> System.out.println("parser.talker." + address.string() + " = " + value));
+    }
 
+    /**
+     * Configures the raw message filter from the named parameters --icao (hexadecimal ICAO addresses),
+     * --df (downlink formats) and --tc (type codes), each of them being a comma-separated list.
+     * A parameter which is not given accepts all the messages
+     *
+     * @throws IllegalArgumentException if one of the values is invalid
+     */
+    private void configureFilter() {
+        Map<String, String> named = getParameters().getNamed();
+        if (named.containsKey(ICAO_ADDRESSES_PARAMETER)) {
+            List<IcaoAddress> addresses = new ArrayList<>();
+            for (String address : named.get(ICAO_ADDRESSES_PARAMETER).split(LIST_SEPARATOR)) {
+                addresses.add(new IcaoAddress(address.trim().toUpperCase()));
+            }
+            filter.acceptIcaoAddresses(addresses);
+        }
+        if (named.containsKey(DOWN_LINK_FORMATS_PARAMETER)) {
+            filter.setDownLinkFormatMask(RawMessageFilter.mask(integers(named.get(DOWN_LINK_FORMATS_PARAMETER))));
+        }
+        if (named.containsKey(TYPE_CODES_PARAMETER)) {
+            filter.setTypeCodeMask(RawMessageFilter.mask(integers(named.get(TYPE_CODES_PARAMETER))));
+        }
     }
 
+    /**
+     * @return (double) the replay speed given by the named parameter --speed, 1 by default, meaning real time
+     * @throws IllegalArgumentException if the speed is not a finite and strictly positive number
+     */
+    private double replaySpeed() {
+        String value = getParameters().getNamed().getOrDefault(REPLAY_SPEED_PARAMETER, DEFAULT_REPLAY_SPEED);
+        double speed;
+        try {
+            speed = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            speed = Double.NaN;
+        }
+        if (!Double.isFinite(speed) || speed <= 0) {
+            throw new IllegalArgumentException(
+                    "--" + REPLAY_SPEED_PARAMETER + " must be a finite, strictly positive number: " + value);
+        }
+        return speed;
+    }
+
+    /**
+     * @return (int) the number of aircraft sending the most messages to print when the application stops, given by
+     * the named parameter --talkers, 0 by default, meaning that the messages sent by each aircraft are not counted
+     * @throws IllegalArgumentException if the number is not a non-negative integer
+     */
+    private int talkerCount() {
+        String value = getParameters().getNamed().getOrDefault(TALKERS_PARAMETER, DEFAULT_TALKERS);
+        int count;
+        try {
+            count = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            count = -1;
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException(
+                    "--" + TALKERS_PARAMETER + " must be a non-negative integer: " + value);
+        }
+        return count;
+    }
 
-    private void readFromFile(ConcurrentLinkedQueue<Message> queue){
+    /**
+     * @param list (String) comma-separated list of integers
+     * @return (int[]) the integers of the list
+     * @throws NumberFormatException if one of the values is not an integer
+     */
+    private static int[] integers(String list) {
+        String[] values = list.split(LIST_SEPARATOR);
+        int[] integers = new int[values.length];
+        for (int i = 0; i < values.length; ++i) integers[i] = Integer.parseInt(values[i].trim());
+        return integers;
+    }
+
+    /**
+     * Replays the messages of the file given as first unnamed parameter, at the speed given by the
+     * named parameter --speed (1 by default, meaning real time). The messages are filtered on this thread,
+     * then parsed in parallel by batches, and reach the state manager in the order of the file.
+     * A batch is handed over to the parser as soon as it is full or when the replay has to wait.
+     *
+     * @param asm (AircraftStateManager) manager receiving the parsed messages
+     */
+    private void readFromFile(AircraftStateManager asm){
+        double speed = replaySpeed;
         try {
             try (DataInputStream s = new DataInputStream(
                     new BufferedInputStream(
-                            new FileInputStream("resources/"+getParameters().getRaw().get(0))
-                    ))){
+                            new FileInputStream("resources/"+getParameters().getUnnamed().get(0))
+                    ));
+                 ParallelMessageParser parser = new ParallelMessageParser(PARSE_THREADS, PARSE_BATCHES_IN_FLIGHT, asm::updateWithMessage)){
 
                 byte[] bytes = new byte[RawMessage.LENGTH];
+                RawMessage[] batch = new RawMessage[PARSE_BATCH_SIZE];
+                int count = 0;
 
                 long time = System.nanoTime();
                 while (true){
-                    long timeStampNs = s.readLong();
+                    long timeStampNs;
+                    try {
+                        timeStampNs = s.readLong();
+                    } catch (EOFException e) {
+                        parser.submit(batch, count);
+                        return;
+                    }
                     s.readNBytes(bytes, 0, bytes.length);
                     RawMessage rawMessage= new RawMessage(timeStampNs, new ByteString(bytes));
-                    Message message = MessageParser.parse(rawMessage);
 
-                    long waitingTime = ( timeStampNs - (System.nanoTime() - time) )/ MICROSECONDE_NANOSECONDE;
-                    if (waitingTime>0)
-                        try {
-                            Thread.sleep(waitingTime);
-                        } catch (InterruptedException e) {
-                            throw new Error(e);
-                            }
+                    long waitingTime = ( (long) (timeStampNs / speed) - (System.nanoTime() - time) )/ MICROSECONDE_NANOSECONDE;
+                    if (waitingTime>0) {
+                        if (count > 0) {
+                            parser.submit(batch, count);
+                            batch = new RawMessage[PARSE_BATCH_SIZE];
+                            count = 0;
+                        }
+                        Thread.sleep(waitingTime);
+                    }
 
-                    if(message != null) {
-                        queue.offer(message);
+                    if (filter.test(rawMessage) && duplicateFilter.test(rawMessage)) {
+                        batch[count++] = rawMessage;
+                        if (count == batch.length) {
+                            parser.submit(batch, count);
+                            batch = new RawMessage[PARSE_BATCH_SIZE];
+                            count = 0;
+                        }
                     }
                 }
             }
         } catch (IOException e){
             throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            throw new Error(e);
         }
     }
-    private void readFromSystem(ConcurrentLinkedQueue<Message> queue){
+    private void readFromSystem(AircraftStateManager asm){
         try {
             AdsbDemodulator demodulator = new AdsbDemodulator(System.in);
             while(true){
                 RawMessage rawMessage = demodulator.nextMessage();
-                if(rawMessage!=null){
+                if(rawMessage!=null && filter.test(rawMessage) && duplicateFilter.test(rawMessage)){
                     Message message = MessageParser.parse(rawMessage);
                     if(message != null) {
-                        queue.offer(message);
+                        asm.updateWithMessage(message);
                     }
                 }
             }
@@ -182,9 +316,10 @@ public class Main extends Application {
         // aircraft and map
         BaseMapController bmc =new BaseMapController(tm, mp);
         AircraftController ac =
-                new AircraftController(mp, asm.states(), sap);
+                new AircraftController(mp, asm.states(), sap, asm.spatialIndex());
         MapButtonsController mapButtonsController = new MapButtonsController(mp, bmc, sap);
         AntennaReceiver antennaReceiver = new AntennaReceiver(mp);
+        antennaReceiver.antennaPosProperty().addListener((p, o, n) -> asm.setReceiverPosition(n));
         var aircraftPlusMap = new StackPane(bmc.pane(), antennaReceiver.pane(), ac.pane() , mapButtonsController.pane());
 
         // status line and table
@@ -1,8 +1,9 @@
 package ch.epfl.javions.gui;
 
+import ch.epfl.javions.GeoPos;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.value.ChangeListener;
-import javafx.collections.ListChangeListener;
 import javafx.scene.control.Button;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.image.Image;
@@ -113,19 +114,18 @@ public class MapButtonsController {
 
 
 
-        Map<ObservableAircraftState, ListChangeListener<ObservableAircraftState.AirbornePos>> listenerMap = new HashMap<>();
+        Map<ObservableAircraftState, InvalidationListener> listenerMap = new HashMap<>();
         ChangeListener<ObservableAircraftState> listener = (p, o, n) -> {
             if (o != null && listenerMap.containsKey(o)) {
-                ListChangeListener<ObservableAircraftState.AirbornePos> oldListener = listenerMap.get(o);
-                o.getTrajectory().removeListener(oldListener);
+                InvalidationListener oldListener = listenerMap.get(o);
+                o.trajectoryVersionProperty().removeListener(oldListener);
                 listenerMap.remove(o);
             }
 
             if (n != null) {
-                bmc.centerOn(n.getTrajectory().get(n.getTrajectory().size() - 1).position());
-                ListChangeListener<ObservableAircraftState.AirbornePos> newListener = change ->
-                        bmc.centerOn(n.getTrajectory().get(n.getTrajectory().size() - 1).position());
-                n.getTrajectory().addListener(newListener);
+                bmc.centerOn(lastPosition(n));
+                InvalidationListener newListener = change -> bmc.centerOn(lastPosition(n));
+                n.trajectoryVersionProperty().addListener(newListener);
                 listenerMap.put(n, newListener);
             }
         };
@@ -133,14 +133,14 @@ public class MapButtonsController {
             if(lockOnPlane.isSelected()){
                 sap.addListener(listener);
                 if(sap.get()!=null){
-                    bmc.centerOn(sap.get().getTrajectory().get(sap.get().getTrajectory().size() - 1).position());
-                    ListChangeListener<ObservableAircraftState.AirbornePos> newListener = change ->
-                            bmc.centerOn(sap.get().getTrajectory().get(sap.get().getTrajectory().size() - 1).position());
-                    sap.get().getTrajectory().addListener(newListener);
-                    listenerMap.put(sap.get(), newListener);
+                    ObservableAircraftState state = sap.get();
+                    bmc.centerOn(lastPosition(state));
+                    InvalidationListener newListener = change -> bmc.centerOn(lastPosition(state));
+                    state.trajectoryVersionProperty().addListener(newListener);
+                    listenerMap.put(state, newListener);
                 }
             }else {
-                sap.get().getTrajectory().removeListener(listenerMap.get(sap.get()));
+                sap.get().trajectoryVersionProperty().removeListener(listenerMap.get(sap.get()));
                 sap.removeListener(listener);
             }
         });
@@ -152,4 +152,12 @@ public class MapButtonsController {
 
     }
 
+    /**
+     * @param state (ObservableAircraftState)
+     * @return (GeoPos) the position of the last point of the trajectory of the given aircraft
+     */
+    private static GeoPos lastPosition(ObservableAircraftState state) {
+        return state.getTrajectory().position(state.getTrajectory().size() - 1);
+    }
+
 }
@@ -1,13 +1,13 @@
 package ch.epfl.javions.gui;
 
 import ch.epfl.javions.GeoPos;
+import ch.epfl.javions.adsb.AircraftState;
 import ch.epfl.javions.adsb.AircraftStateSetter;
 import ch.epfl.javions.adsb.CallSign;
+import ch.epfl.javions.adsb.Trajectory;
 import ch.epfl.javions.aircraft.AircraftData;
 import ch.epfl.javions.aircraft.IcaoAddress;
 import javafx.beans.property.*;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 
 
 /**
@@ -23,32 +23,39 @@ import javafx.collections.ObservableList;
  * <p>
  * An instance of the ObservableAircraftState class also keeps track of
  * the aircraft's call sign, last message timestamp and trajectory.
+ * <p>
+ * This class is an adapter over the plain AircraftState: its setters update the plain state, then set the
+ * properties of the fields that changed, so that the trajectory is built as without any user interface. When the
+ * state is updated from the snapshots of the engine, the properties are set from the snapshots and only the
+ * trajectory of the plain state is used, to mirror the one of the engine.
+ * <p>
+ * The trajectory is bounded and simplified as it grows. It is not observable itself: its version is incremented
+ * whenever it is modified, once per update.
  * @author: Tlili Ahmed (344939)
  * @author: Bouden Omar (341381)
  */
 public final class ObservableAircraftState implements AircraftStateSetter {
 
-    private final AircraftData aircraftData;
-    private final IcaoAddress icaoAddress;
+    private final AircraftState state;
     private final IntegerProperty category;
     private final LongProperty lastMessageTimeStampNs;
     private final ObjectProperty<CallSign> callSign;
     private final ObjectProperty<GeoPos> position;
     private final DoubleProperty altitude, velocity, trackOrHeading;
-    private final ObservableList<AirbornePos> trajectory;
-    private final ObservableList<AirbornePos> unmodifiableTrajectory;
-    private long oldMessageTimeStamps;
+    private final LongProperty trajectoryVersion;
 
     /**
-     * The AirbornePos record contains the latitude, longitude and altitude
-     * properties of a position.
-     * <p>
-     * It is used to record the trajectory of the aircraft.
+     * Constructs a new ObservableAircraftState object with the specified
+     * AircraftData and IcaoAddress, whose trajectory has the default capacity.
      *
-     * @param position (GeoPos)
-     * @param altitude (double)
+     * @param aircraftData The AircraftData object that contains the data
+     *                     of the aircraft.
+     * @param icaoAddress The IcaoAddress object that represents the unique
+     *                     identifier of the aircraft.
      */
-    public record AirbornePos(GeoPos position, double altitude){}
+    public ObservableAircraftState(AircraftData aircraftData, IcaoAddress icaoAddress) {
+        this(aircraftData, icaoAddress, Trajectory.DEFAULT_CAPACITY);
+    }
 
     /**
      * Constructs a new ObservableAircraftState object with the specified
@@ -58,10 +65,11 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      *                     of the aircraft.
      * @param icaoAddress The IcaoAddress object that represents the unique
      *                     identifier of the aircraft.
+     * @param trajectoryCapacity The maximum number of points of the trajectory.
+     * @throws IllegalArgumentException if the capacity is smaller than 2.
      */
-    public ObservableAircraftState(AircraftData aircraftData, IcaoAddress icaoAddress) {
-        this.aircraftData = aircraftData;
-        this.icaoAddress = icaoAddress;
+    public ObservableAircraftState(AircraftData aircraftData, IcaoAddress icaoAddress, int trajectoryCapacity) {
+        state = new AircraftState(icaoAddress, aircraftData, trajectoryCapacity);
         category = new SimpleIntegerProperty();
         lastMessageTimeStampNs = new SimpleLongProperty();
         callSign = new SimpleObjectProperty<>();
@@ -69,10 +77,7 @@ public final class ObservableAircraftState implements AircraftStateSetter {
         altitude = new SimpleDoubleProperty(Double.NaN);
         velocity = new SimpleDoubleProperty(Double.NaN);
         trackOrHeading = new SimpleDoubleProperty();
-        trajectory = FXCollections.observableArrayList();
-        unmodifiableTrajectory = FXCollections.unmodifiableObservableList(trajectory);
-        oldMessageTimeStamps = -1;
-
+        trajectoryVersion = new SimpleLongProperty();
     }
 
 
@@ -100,7 +105,8 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      */
     @Override
     public void setLastMessageTimeStampNs(long lastMessageTimeStampNs) {
-        this.lastMessageTimeStampNs.set(lastMessageTimeStampNs);
+        state.setLastMessageTimeStampNs(lastMessageTimeStampNs);
+        publishChanges();
     }
 
 
@@ -123,7 +129,8 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      */
     @Override
     public void setCategory(int category) {
-        this.category.set(category);
+        state.setCategory(category);
+        publishChanges();
     }
 
 
@@ -149,7 +156,8 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      */
     @Override
     public void setCallSign(CallSign callSign) {
-        this.callSign.set(callSign);
+        state.setCallSign(callSign);
+        publishChanges();
     }
 
     /**
@@ -172,10 +180,8 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      */
     @Override
     public void setPosition(GeoPos position) {
-        if(!Double.isNaN(getAltitude()))
-            trajectory.add( new AirbornePos(position, getAltitude()) );
-        oldMessageTimeStamps = getLastMessageTimeStampNs();
-        this.position.set(position);
+        state.setPosition(position);
+        publishChanges();
     }
 
     /**
@@ -198,13 +204,8 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      */
     @Override
     public void setAltitude(double altitude) {
-        if(getPosition()!=null){
-            if(trajectory.isEmpty()) trajectory.add( new AirbornePos(getPosition(), altitude) );
-            else if(getLastMessageTimeStampNs() == oldMessageTimeStamps)
-                trajectory.set(trajectory.size()-1, new AirbornePos(getPosition(), altitude));
-        }
-        oldMessageTimeStamps = getLastMessageTimeStampNs();
-        this.altitude.set(altitude);
+        state.setAltitude(altitude);
+        publishChanges();
     }
 
 
@@ -230,7 +231,8 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      */
     @Override
     public void setVelocity(double velocity) {
-        this.velocity.set(velocity);
+        state.setVelocity(velocity);
+        publishChanges();
     }
 
 
@@ -255,29 +257,84 @@ public final class ObservableAircraftState implements AircraftStateSetter {
      */
     @Override
     public void setTrackOrHeading(double trackOrHeading) {
-        this.trackOrHeading.set(trackOrHeading);
+        state.setTrackOrHeading(trackOrHeading);
+        publishChanges();
+    }
+
+
+    /**
+     * Updates the given properties and the trajectory of the aircraft with the given snapshot, published by the
+     * state engine, setting each property at most once. The tail of the trajectory carried by the snapshot replaces
+     * the one of the trajectory, and its version is incremented once.
+     *
+     * @param snapshot (AircraftSnapshot) a snapshot of the same aircraft, more recent than the previous one
+     * @param changes  (int) bits of the properties to update, among the constants of AircraftState
+     */
+    void update(AircraftSnapshot snapshot, int changes) {
+        if ((changes & AircraftState.LAST_MESSAGE_TIME_STAMP) != 0)
+            lastMessageTimeStampNs.set(snapshot.lastMessageTimeStampNs());
+        if ((changes & AircraftState.CATEGORY) != 0) category.set(snapshot.category());
+        if ((changes & AircraftState.CALL_SIGN) != 0) callSign.set(snapshot.callSign());
+        if ((changes & AircraftState.ALTITUDE) != 0) altitude.set(snapshot.altitude());
+        if ((changes & AircraftState.VELOCITY) != 0) velocity.set(snapshot.velocity());
+        if ((changes & AircraftState.TRACK_OR_HEADING) != 0) trackOrHeading.set(snapshot.trackOrHeading());
+        if ((changes & AircraftState.POSITION) != 0) position.set(snapshot.position());
+        if ((changes & AircraftState.TRAJECTORY) == 0) return;
+
+        state.getTrajectory().replaceTail(snapshot.trajectoryTail());
+        incrementTrajectoryVersion();
+    }
+
+    /**
+     * @return the trajectory of the aircraft, which must not be modified.
+     */
+    public Trajectory getTrajectory(){
+        return state.getTrajectory();
     }
 
+    /**
+     * @return a read-only LongProperty incremented whenever the trajectory of the aircraft is modified.
+     */
+    public ReadOnlyLongProperty trajectoryVersionProperty() {
+        return trajectoryVersion;
+    }
+
+    /**
+     * Sets the properties of the fields of the plain state that changed, then clears its changes
+     */
+    private void publishChanges() {
+        int changes = state.changes();
+        state.clearChanges();
+        if ((changes & AircraftState.LAST_MESSAGE_TIME_STAMP) != 0)
+            lastMessageTimeStampNs.set(state.getLastMessageTimeStampNs());
+        if ((changes & AircraftState.CATEGORY) != 0) category.set(state.getCategory());
+        if ((changes & AircraftState.CALL_SIGN) != 0) callSign.set(state.getCallSign());
+        if ((changes & AircraftState.ALTITUDE) != 0) altitude.set(state.getAltitude());
+        if ((changes & AircraftState.VELOCITY) != 0) velocity.set(state.getVelocity());
+        if ((changes & AircraftState.TRACK_OR_HEADING) != 0) trackOrHeading.set(state.getTrackOrHeading());
+        if ((changes & AircraftState.POSITION) != 0) position.set(state.getPosition());
+        if ((changes & AircraftState.TRAJECTORY) != 0) incrementTrajectoryVersion();
+    }
 
     /**
-     * @return an unmodifiable ObservableList<AirbornePos> representing the trajectory of the aircraft.
+     * Notifies the observers of the trajectory that it has been modified
      */
-    public ObservableList<AirbornePos> getTrajectory(){
-        return unmodifiableTrajectory;
+    private void incrementTrajectoryVersion() {
+        trajectoryVersion.set(trajectoryVersion.get() + 1);
     }
 
     /**
      * @return icaoAddress (IcaoAddress) related to the aircraft
      */
     public IcaoAddress address() {
-        return icaoAddress;
+        return state.address();
     }
 
     /**
      * @return (AircraftData) containing aircraft data registration, model, etc..
      */
     public AircraftData getAircraftData() {
-        return aircraftData;
+        return state.getAircraftData();
     }
 
 }